@@ -0,0 +1,141 @@
+/*
+ * Copyright 2006 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * U.S. Government Rights - Commercial software. Government users are
+ * subject to the Sun Microsystems, Inc. standard license agreement and
+ * applicable provisions of the FAR and its supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo
+ * and Java are trademarks or registered trademarks of Sun Microsystems,
+ * Inc. in the U.S. and other countries.
+ */
+package com.sun.squawk.bench.channelIOBenchmark;
+
+import java.io.*;
+import javax.microedition.io.*;
+
+/**
+ * Measures the throughput of stream I/O through the channel to the embedded (or I/O server) JVM.
+ * A mix of single byte, int, long and small buffer writes is written to a file or socket
+ * connection and read back, which is the access pattern whose cost is dominated by the
+ * per-operation channel round trip. Comparing a VM built with the BUFFERCHANNELINPUT and
+ * BUFFERCHANNELOUTPUT properties against one built without them shows the effect of batching.
+ * <p>
+ * Usage: ChannelIOBenchmark file|socket [records] [file name|port]
+ */
+public class ChannelIOBenchmark {
+
+    /**
+     * The default number of records written and read.
+     */
+    static final int RECORDS = 10000;
+
+    /**
+     * The size in bytes of one record.
+     */
+    static final int RECORD_SIZE = 1 + 4 + 8 + 16;
+
+    /**
+     * Writes a number of records to a stream.
+     */
+    static void writeRecords(DataOutputStream out, int records) throws IOException {
+        byte[] payload = new byte[16];
+        for (int i = 0; i != records; ++i) {
+            payload[i & 15] = (byte)i;
+            out.writeByte(i);
+            out.writeInt(i);
+            out.writeLong(i * 31L);
+            out.write(payload, 0, payload.length);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a number of records written by {@link #writeRecords} from a stream.
+     */
+    static void readRecords(DataInputStream in, int records) throws IOException {
+        byte[] payload = new byte[16];
+        for (int i = 0; i != records; ++i) {
+            if (in.readByte() != (byte)i || in.readInt() != i || in.readLong() != i * 31L) {
+                throw new IOException("corrupt record " + i);
+            }
+            in.readFully(payload);
+        }
+    }
+
+    /**
+     * Writes records to a file and reads them back.
+     *
+     * @return the elapsed time in milliseconds
+     */
+    static long runFile(String name, int records) throws IOException {
+        long start = System.currentTimeMillis();
+        DataOutputStream out = Connector.openDataOutputStream("file://" + name);
+        writeRecords(out, records);
+        out.close();
+
+        DataInputStream in = Connector.openDataInputStream("file://" + name);
+        readRecords(in, records);
+        in.close();
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Writes records to a loopback socket connection on one thread while reading them
+     * on another.
+     *
+     * @return the elapsed time in milliseconds
+     */
+    static long runSocket(int port, final int records) throws IOException {
+        final StreamConnectionNotifier server = (StreamConnectionNotifier)Connector.open("serversocket://:" + port);
+        final IOException[] failure = new IOException[1];
+        Thread reader = new Thread() {
+            public void run() {
+                try {
+                    StreamConnection con = server.acceptAndOpen();
+                    DataInputStream in = con.openDataInputStream();
+                    readRecords(in, records);
+                    in.close();
+                    con.close();
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }
+        };
+
+        long start = System.currentTimeMillis();
+        reader.start();
+        StreamConnection con = (StreamConnection)Connector.open("socket://localhost:" + port);
+        DataOutputStream out = con.openDataOutputStream();
+        writeRecords(out, records);
+        out.close();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        con.close();
+        server.close();
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return elapsed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || !(args[0].equals("file") || args[0].equals("socket"))) {
+            System.out.println("Usage: ChannelIOBenchmark file|socket [records] [file name|port]");
+            return;
+        }
+        int records = args.length > 1 ? Integer.parseInt(args[1]) : RECORDS;
+        long elapsed;
+        if (args[0].equals("file")) {
+            elapsed = runFile(args.length > 2 ? args[2] : "channelio.tmp", records);
+        } else {
+            elapsed = runSocket(args.length > 2 ? Integer.parseInt(args[2]) : 9876, records);
+        }
+        long bytes = 2L * records * RECORD_SIZE;
+        System.out.println("channel " + args[0] + " I/O: " + bytes + " bytes in " + elapsed + " ms (" +
+                           (elapsed == 0 ? 0 : (bytes / elapsed)) + " bytes/ms)");
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2006 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * U.S. Government Rights - Commercial software. Government users are
+ * subject to the Sun Microsystems, Inc. standard license agreement and
+ * applicable provisions of the FAR and its supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo
+ * and Java are trademarks or registered trademarks of Sun Microsystems,
+ * Inc. in the U.S. and other countries.
+ */
+package com.sun.squawk.bench.objectIDBenchmark;
+
+import com.sun.squawk.util.*;
+
+/**
+ * Measures the cost of assigning identifiers to the objects of a large heap the way the
+ * debugger agent does when a debugger attaches: each object is looked up in a
+ * WeakIdentityIntHashtable and given a new identifier if it does not have one yet.
+ * The identifiers are then resolved back to objects, half of the objects are made
+ * unreachable and the cleared entries are removed after a collection.
+ * <p>
+ * The heap used by the table is also reported. This includes the
+ * <code>ObjectAssociation</code> that hashing attaches to each object (see
+ * {@link WeakIdentityIntHashtable}).
+ * <p>
+ * Usage: ObjectIDBenchmark [objects]
+ */
+public class ObjectIDBenchmark {
+
+    /**
+     * The default number of reachable objects.
+     */
+    static final int OBJECTS = 100000;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : OBJECTS;
+        Object[] heap = new Object[n];
+        for (int i = 0; i != n; ++i) {
+            heap[i] = (i & 1) == 0 ? (Object)new int[1] : new Object();
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        WeakIdentityIntHashtable objects = new WeakIdentityIntHashtable();
+        int nextID = 1;
+
+        // Assign an identifier to each object, looking each one up twice as
+        // the agent does when an object is sent in several replies
+        long start = System.currentTimeMillis();
+        for (int pass = 0; pass != 2; ++pass) {
+            for (int i = 0; i != n; ++i) {
+                Object object = heap[i];
+                if (objects.getKey(object) == 0) {
+                    objects.put(nextID++, object);
+                }
+            }
+        }
+        long assign = System.currentTimeMillis() - start;
+
+        System.gc();
+        long used = (runtime.totalMemory() - runtime.freeMemory()) - usedBefore;
+
+        // Resolve the identifiers back to the objects
+        start = System.currentTimeMillis();
+        for (int id = 1; id != nextID; ++id) {
+            if (objects.get(id) != heap[id - 1]) {
+                throw new RuntimeException("wrong object for ID " + id);
+            }
+        }
+        long resolve = System.currentTimeMillis() - start;
+
+        // Drop half of the objects and remove their entries
+        for (int i = 0; i < n; i += 2) {
+            heap[i] = null;
+        }
+        System.gc();
+        start = System.currentTimeMillis();
+        int size = objects.size();
+        long purge = System.currentTimeMillis() - start;
+
+        System.out.println("object IDs: " + n + " objects assigned in " + assign + " ms, resolved in " + resolve +
+                           " ms, " + (n - size) + " cleared entries removed in " + purge + " ms, " +
+                           (used / n) + " bytes of heap per object ID");
+    }
+}
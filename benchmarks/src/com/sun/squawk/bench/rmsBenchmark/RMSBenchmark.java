@@ -0,0 +1,105 @@
+/*
+ * Copyright 2006 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * U.S. Government Rights - Commercial software. Government users are
+ * subject to the Sun Microsystems, Inc. standard license agreement and
+ * applicable provisions of the FAR and its supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo
+ * and Java are trademarks or registered trademarks of Sun Microsystems,
+ * Inc. in the U.S. and other countries.
+ */
+package com.sun.squawk.bench.rmsBenchmark;
+
+import java.util.Random;
+
+import javax.microedition.rms.*;
+
+/**
+ * Measures the cost of reading records of a large record store in random order, which
+ * exercises the lookup of a record by its id. The store is filled with small records,
+ * read back in a random order, partially rewritten with larger records (which moves
+ * them) and read again.
+ * <p>
+ * Usage: RMSBenchmark [records [reads]]
+ */
+public class RMSBenchmark {
+
+    /**
+     * The default number of records.
+     */
+    static final int RECORDS = 50000;
+
+    /**
+     * The default number of random reads.
+     */
+    static final int READS = 10000;
+
+    /**
+     * The name of the record store used by the benchmark.
+     */
+    static final String NAME = "RMSBenchmark";
+
+    /**
+     * Reads records in a random order, checking that each has the content it was written with.
+     */
+    private static void read(RecordStore rs, int n, int reads, Random random) throws RecordStoreException {
+        byte[] buffer = new byte[64];
+        for (int i = 0; i != reads; ++i) {
+            int id = 1 + (random.nextInt() & 0x7FFFFFFF) % n;
+            rs.getRecord(id, buffer, 0);
+            if (buffer[0] != (byte)id || buffer[1] != (byte)(id >> 8)) {
+                throw new RuntimeException("wrong data for record " + id);
+            }
+        }
+    }
+
+    /**
+     * Deletes the record store used by the benchmark if it exists.
+     */
+    private static void delete() throws RecordStoreException {
+        try {
+            RecordStore.deleteRecordStore(NAME);
+        } catch (RecordStoreNotFoundException e) {
+        }
+    }
+
+    public static void main(String[] args) throws RecordStoreException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : RECORDS;
+        int reads = args.length > 1 ? Integer.parseInt(args[1]) : READS;
+        delete();
+        RecordStore rs = RecordStore.openRecordStore(NAME, true);
+        Random random = new Random(42);
+
+        byte[] data = new byte[48];
+        long start = System.currentTimeMillis();
+        for (int i = 1; i <= n; ++i) {
+            data[0] = (byte)i;
+            data[1] = (byte)(i >> 8);
+            if (rs.addRecord(data, 0, 16) != i) {
+                throw new RuntimeException("unexpected record id");
+            }
+        }
+        long add = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        read(rs, n, reads, random);
+        long read = System.currentTimeMillis() - start;
+
+        // Grow every tenth record so that it is moved to the end of the store
+        for (int i = 1; i <= n; i += 10) {
+            data[0] = (byte)i;
+            data[1] = (byte)(i >> 8);
+            rs.setRecord(i, data, 0, data.length);
+        }
+        start = System.currentTimeMillis();
+        read(rs, n, reads, random);
+        long reread = System.currentTimeMillis() - start;
+
+        rs.closeRecordStore();
+        delete();
+
+        System.out.println("rms: " + n + " records added in " + add + " ms, " + reads + " random reads in " + read +
+                           " ms, " + reads + " random reads after updates in " + reread + " ms");
+    }
+}
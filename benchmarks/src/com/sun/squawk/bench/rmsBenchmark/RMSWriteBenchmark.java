@@ -0,0 +1,94 @@
+/*
+ * Copyright 2006 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * U.S. Government Rights - Commercial software. Government users are
+ * subject to the Sun Microsystems, Inc. standard license agreement and
+ * applicable provisions of the FAR and its supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo
+ * and Java are trademarks or registered trademarks of Sun Microsystems,
+ * Inc. in the U.S. and other countries.
+ */
+package com.sun.squawk.bench.rmsBenchmark;
+
+import javax.microedition.rms.*;
+
+/**
+ * Measures the rate at which records are written to a record store until it holds a
+ * given amount of data, and the heap in use once the store is that large. Records are
+ * added and then rewritten in place, each phase ending with a commit.
+ * <p>
+ * Usage: RMSWriteBenchmark [megabytes [record size]]
+ */
+public class RMSWriteBenchmark {
+
+    /**
+     * The default size of the record data in megabytes.
+     */
+    static final int MEGABYTES = 50;
+
+    /**
+     * The default size of a record in bytes.
+     */
+    static final int RECORD_SIZE = 1000;
+
+    /**
+     * The name of the record store used by the benchmark.
+     */
+    static final String NAME = "RMSWriteBenchmark";
+
+    /**
+     * Returns the heap in use after a collection.
+     */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Returns a rate in kilobytes per second.
+     */
+    private static long rate(long bytes, long ms) {
+        return ms == 0 ? 0 : (bytes * 1000 / 1024) / ms;
+    }
+
+    public static void main(String[] args) throws RecordStoreException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : MEGABYTES;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : RECORD_SIZE;
+        int n = (int)((long)megabytes * 1024 * 1024 / size);
+        try {
+            RecordStore.deleteRecordStore(NAME);
+        } catch (RecordStoreNotFoundException e) {
+        }
+        long heapBefore = usedMemory();
+        RecordStore rs = RecordStore.openRecordStore(NAME, true);
+
+        byte[] data = new byte[size];
+        long start = System.currentTimeMillis();
+        for (int i = 1; i <= n; ++i) {
+            data[0] = (byte)i;
+            rs.addRecord(data, 0, size);
+        }
+        rs.commit();
+        long add = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        for (int i = 1; i <= n; ++i) {
+            data[0] = (byte)~i;
+            rs.setRecord(i, data, 0, size);
+        }
+        rs.commit();
+        long set = System.currentTimeMillis() - start;
+
+        long heap = usedMemory() - heapBefore;
+        int storeSize = rs.getSize();
+        rs.closeRecordStore();
+        RecordStore.deleteRecordStore(NAME);
+
+        long bytes = (long)n * size;
+        System.out.println("rms write: " + n + " records of " + size + " bytes added at " + rate(bytes, add) +
+                           " KB/s, rewritten at " + rate(bytes, set) + " KB/s; " + (storeSize / 1024) +
+                           " KB store uses " + (heap / 1024) + " KB of heap");
+    }
+}
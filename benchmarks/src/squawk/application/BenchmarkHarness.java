@@ -0,0 +1,358 @@
+/*
+ * Copyright 2006 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * U.S. Government Rights - Commercial software. Government users are
+ * subject to the Sun Microsystems, Inc. standard license agreement and
+ * applicable provisions of the FAR and its supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo
+ * and Java are trademarks or registered trademarks of Sun Microsystems,
+ * Inc. in the U.S. and other countries.
+ */
+package squawk.application;
+
+import java.io.PrintStream;
+import java.util.Vector;
+
+import com.sun.squawk.Isolate;
+
+/**
+ * A harness for running the Squawk benchmarks with a number of warmup and measurement
+ * iterations and reporting summary statistics for the measured iterations.
+ * <p>
+ * Each benchmark is either a <i>micro</i> benchmark that calls the <code>main</code> method
+ * of a benchmark on the harness's thread, or a <i>macro</i> benchmark that runs the
+ * <code>main</code> method of a class in a new isolate for each iteration (e.g. the
+ * programs in <code>samples/src/bench</code>). The <i>io</i> benchmarks measure channel I/O
+ * throughput and, like the macro benchmarks, are only run when named.
+ * <p>
+ * With the <code>-json</code> option, the result of each benchmark is printed as a single line
+ * JSON object starting with <code>{"benchmark":</code>. The host side driver
+ * (<code>com.sun.squawk.util.BenchmarkRunner</code>) uses these lines to combine the results
+ * of several runs of the squawk executable and to compare them against a baseline.
+ * <p>
+ * A benchmark that throws an exception (including a Richards benchmark that computes the wrong
+ * results) is reported as failed instead of being timed, and the harness exits with code 1.
+ */
+public class BenchmarkHarness {
+
+    /**
+     * A single benchmark.
+     */
+    static abstract class Benchmark {
+
+        /**
+         * The name used to select this benchmark on the command line.
+         */
+        final String name;
+
+        Benchmark(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Runs one iteration of this benchmark.
+         *
+         * @param classPath  the class path for the benchmarks that run in their own isolate
+         */
+        abstract void run(String classPath) throws Exception;
+
+        /**
+         * @return "micro", "macro" or "io"
+         */
+        String getKind() {
+            return "micro";
+        }
+    }
+
+    /**
+     * A benchmark that runs the main method of a class in a new isolate.
+     */
+    static class IsolateBenchmark extends Benchmark {
+
+        final String mainClass;
+        final String[] args;
+
+        IsolateBenchmark(String name, String mainClass, String[] args) {
+            super(name);
+            this.mainClass = mainClass;
+            this.args = args;
+        }
+
+        void run(String classPath) throws Exception {
+            Isolate isolate = new Isolate(mainClass, args, classPath, null);
+            isolate.start();
+            isolate.join();
+            if (isolate.getExitCode() != 0) {
+                throw new RuntimeException(mainClass + " exited with code " + isolate.getExitCode());
+            }
+        }
+
+        String getKind() {
+            return "macro";
+        }
+    }
+
+    /**
+     * A Richards benchmark. The <code>main</code> method of these only prints a message
+     * when the results are wrong, so <code>run()</code> is called directly instead.
+     */
+    static abstract class RichardsBenchmark extends Benchmark {
+
+        RichardsBenchmark(String name) {
+            super(name);
+        }
+
+        /**
+         * Runs the benchmark once.
+         *
+         * @return false if the benchmark computed the wrong results
+         */
+        abstract boolean runRichards();
+
+        void run(String classPath) {
+            if (!runRichards()) {
+                throw new RuntimeException("Incorrect results!");
+            }
+        }
+    }
+
+    /**
+     * The known benchmarks.
+     */
+    private static final Benchmark[] BENCHMARKS = {
+        new RichardsBenchmark("richards_gibbons") {
+            boolean runRichards() { return new com.sun.labs.kanban.richards_gibbons.Richards().run(); }
+        },
+        new RichardsBenchmark("richards_gibbons_final") {
+            boolean runRichards() { return new com.sun.labs.kanban.richards_gibbons_final.Richards().run(); }
+        },
+        new RichardsBenchmark("richards_gibbons_no_switch") {
+            boolean runRichards() { return new com.sun.labs.kanban.richards_gibbons_no_switch.Richards().run(); }
+        },
+        new RichardsBenchmark("richards_deutsch_no_acc") {
+            boolean runRichards() { return new com.sun.labs.kanban.richards_deutsch_no_acc.Richards().run(); }
+        },
+        new RichardsBenchmark("richards_deutsch_acc_virtual") {
+            boolean runRichards() { return new com.sun.labs.kanban.richards_deutsch_acc_virtual.Richards().run(); }
+        },
+        new RichardsBenchmark("richards_deutsch_acc_final") {
+            boolean runRichards() { return new com.sun.labs.kanban.richards_deutsch_acc_final.Richards().run(); }
+        },
+        new RichardsBenchmark("richards_deutsch_acc_interface") {
+            boolean runRichards() { return new com.sun.labs.kanban.richards_deutsch_acc_interface.Richards().run(); }
+        },
+        new Benchmark("deltablue") {
+            void run(String cp) { com.sun.labs.kanban.DeltaBlue.DeltaBlue.main(new String[0]); }
+        },
+        new Benchmark("math") {
+            void run(String cp) { com.sun.squawk.bench.MathBenchmark.main(new String[0]); }
+        },
+        new Benchmark("life") {
+            void run(String cp) { com.sun.squawk.bench.gameOfLifeBenchmark.life.main(new String[] { "-light" }); }
+        },
+        new Benchmark("channel_file") {
+            void run(String cp) throws Exception { com.sun.squawk.bench.channelIOBenchmark.ChannelIOBenchmark.main(new String[] { "file" }); }
+            String getKind() { return "io"; }
+        },
+        new Benchmark("channel_socket") {
+            void run(String cp) throws Exception { com.sun.squawk.bench.channelIOBenchmark.ChannelIOBenchmark.main(new String[] { "socket" }); }
+            String getKind() { return "io"; }
+        },
+        new Benchmark("object_ids") {
+            void run(String cp) { com.sun.squawk.bench.objectIDBenchmark.ObjectIDBenchmark.main(new String[0]); }
+        },
+        new Benchmark("rms") {
+            void run(String cp) throws Exception { com.sun.squawk.bench.rmsBenchmark.RMSBenchmark.main(new String[0]); }
+            String getKind() { return "io"; }
+        },
+        new Benchmark("rms_write") {
+            void run(String cp) throws Exception { com.sun.squawk.bench.rmsBenchmark.RMSWriteBenchmark.main(new String[0]); }
+            String getKind() { return "io"; }
+        },
+        new IsolateBenchmark("cubes", "bench.cubes.Main", new String[0]),
+        new IsolateBenchmark("delta", "bench.delta.Main", new String[0]),
+        new IsolateBenchmark("hanoi", "bench.hanoi.Main", new String[0]),
+        new IsolateBenchmark("loop",  "bench.loop.Main",  new String[0]),
+        new IsolateBenchmark("mpeg",  "bench.mpeg.Main",  new String[0]),
+    };
+
+    /**
+     * Prints the usage message.
+     *
+     * @param errMsg  an optional error message
+     */
+    private static void usage(String errMsg) {
+        PrintStream out = System.out;
+        if (errMsg != null) {
+            out.println(errMsg);
+        }
+        out.println("Usage: BenchmarkHarness [-options] [benchmark...]");
+        out.println("where options include:");
+        out.println("    -warmup:<n>      number of unmeasured iterations (default: 1)");
+        out.println("    -iterations:<n>  number of measured iterations (default: 5)");
+        out.println("    -cp:<path>       class path for the macro benchmarks (default: samples/j2meclasses)");
+        out.println("    -json            print each result as a line of JSON");
+        out.println("    -h               show this message and exit");
+        out.println();
+        out.println("If no benchmark is given, all the micro benchmarks are run. The known benchmarks are:");
+        for (int i = 0; i != BENCHMARKS.length; ++i) {
+            out.println("    " + BENCHMARKS[i].name + " (" + BENCHMARKS[i].getKind() + ")");
+        }
+    }
+
+    /**
+     * Finds a benchmark by name.
+     *
+     * @param name  the name of the benchmark
+     * @return the benchmark or null if there is no benchmark named <code>name</code>
+     */
+    private static Benchmark lookup(String name) {
+        for (int i = 0; i != BENCHMARKS.length; ++i) {
+            if (BENCHMARKS[i].name.equals(name)) {
+                return BENCHMARKS[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs a benchmark.
+     *
+     * @param benchmark   the benchmark to run
+     * @param warmup      the number of unmeasured iterations
+     * @param iterations  the number of measured iterations
+     * @param classPath   the class path for the macro benchmarks
+     * @return the statistics for the measured iterations
+     */
+    static BenchmarkStatistics run(Benchmark benchmark, int warmup, int iterations, String classPath) throws Exception {
+        for (int i = 0; i != warmup; ++i) {
+            benchmark.run(classPath);
+        }
+        long[] samples = new long[iterations];
+        for (int i = 0; i != iterations; ++i) {
+            long start = System.currentTimeMillis();
+            benchmark.run(classPath);
+            samples[i] = System.currentTimeMillis() - start;
+        }
+        return new BenchmarkStatistics(samples);
+    }
+
+    /**
+     * Prints the result of a benchmark as a single line of JSON.
+     */
+    private static void printJSON(PrintStream out, Benchmark benchmark, int warmup, BenchmarkStatistics stats) {
+        StringBuffer buf = new StringBuffer();
+        buf.append("{\"benchmark\":\"").append(benchmark.name).
+            append("\",\"kind\":\"").append(benchmark.getKind()).
+            append("\",\"unit\":\"ms\",\"warmup\":").append(warmup).
+            append(',');
+        out.println(stats.appendJSON(buf).toString());
+    }
+
+    /**
+     * Prints the failure of a benchmark as a single line of JSON.
+     */
+    private static void printJSONFailure(PrintStream out, Benchmark benchmark, Throwable failure) {
+        StringBuffer buf = new StringBuffer();
+        buf.append("{\"benchmark\":\"").append(benchmark.name).
+            append("\",\"kind\":\"").append(benchmark.getKind()).
+            append("\",\"failed\":\"");
+
+        // The host side driver's JSON parsing does not handle escapes
+        String message = failure.toString();
+        for (int i = 0; i != message.length(); ++i) {
+            char ch = message.charAt(i);
+            if (ch == '"') {
+                ch = '\'';
+            } else if (ch == '\\' || ch < ' ') {
+                ch = ' ';
+            }
+            buf.append(ch);
+        }
+        buf.append("\"}");
+        out.println(buf.toString());
+    }
+
+    /**
+     * Prints the result of a benchmark in a human readable form.
+     */
+    private static void printText(PrintStream out, Benchmark benchmark, BenchmarkStatistics stats) {
+        out.println(benchmark.name + ": mean " + stats.mean + " ms +/- " + stats.ci95 +
+                    " (95% CI), p50 " + stats.p50 + " ms, p99 " + stats.p99 +
+                    " ms, min " + stats.min + " ms, max " + stats.max + " ms, n = " + stats.samples.length);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int warmup = 1;
+        int iterations = 5;
+        String classPath = "samples/j2meclasses";
+        boolean json = false;
+        Vector selected = new Vector();
+
+        for (int i = 0; i != args.length; ++i) {
+            String arg = args[i];
+            if (arg.startsWith("-warmup:")) {
+                warmup = Integer.parseInt(arg.substring("-warmup:".length()));
+            } else if (arg.startsWith("-iterations:")) {
+                iterations = Integer.parseInt(arg.substring("-iterations:".length()));
+            } else if (arg.startsWith("-cp:")) {
+                classPath = arg.substring("-cp:".length());
+            } else if (arg.equals("-json")) {
+                json = true;
+            } else if (arg.equals("-h")) {
+                usage(null);
+                return;
+            } else if (arg.startsWith("-")) {
+                usage("Unknown option: " + arg);
+                System.exit(1);
+            } else {
+                Benchmark benchmark = lookup(arg);
+                if (benchmark == null) {
+                    usage("Unknown benchmark: " + arg);
+                    System.exit(1);
+                }
+                selected.addElement(benchmark);
+            }
+        }
+
+        if (warmup < 0 || iterations < 1) {
+            usage("warmup must be >= 0 and iterations must be >= 1");
+            System.exit(1);
+        }
+
+        if (selected.isEmpty()) {
+            for (int i = 0; i != BENCHMARKS.length; ++i) {
+                if (BENCHMARKS[i].getKind().equals("micro")) {
+                    selected.addElement(BENCHMARKS[i]);
+                }
+            }
+        }
+
+        int failures = 0;
+        for (int i = 0; i != selected.size(); ++i) {
+            Benchmark benchmark = (Benchmark)selected.elementAt(i);
+            BenchmarkStatistics stats;
+            try {
+                stats = run(benchmark, warmup, iterations, classPath);
+            } catch (Throwable e) {
+                // A benchmark that fails is reported as such and not timed
+                failures++;
+                if (json) {
+                    printJSONFailure(System.out, benchmark, e);
+                } else {
+                    System.out.println(benchmark.name + ": FAILED (" + e + ")");
+                }
+                continue;
+            }
+            if (json) {
+                printJSON(System.out, benchmark, warmup, stats);
+            } else {
+                printText(System.out, benchmark, stats);
+            }
+        }
+        if (failures != 0) {
+            System.exit(1);
+        }
+    }
+}
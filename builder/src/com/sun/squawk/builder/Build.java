@@ -577,6 +577,10 @@ public class Build {
         addJavaCommand("ht2html", "j2se/classes:j2me/classes", false, "", "com.sun.squawk.ht2html.Main", "j2se").
             setDescription("converts a heap trace to a set of HTML files");
 
+        // Add the "benchmark" command
+        addJavaCommand("benchmark", "j2se/classes:j2me/classes", false, "", "com.sun.squawk.util.BenchmarkRunner", "j2se").
+            setDescription("runs the benchmark harness in a number of squawk processes and compares the results to a baseline");
+
         // Add the "rom" command
         addCommand(new RomCommand(this)).dependsOn("SwitchDotC");
 
@@ -595,6 +599,9 @@ public class Build {
         // Add the "regression" command
         addCommand(new RegressionCommand(this));
 
+        // Add the "superinstructions" command
+        addCommand(new SuperinstructionsCommand(this));
+
         // Add the "squawk" command
         addJavaCommand("squawk", "j2se/classes:j2me/classes", false, "-Djava.library.path=.", "com.sun.squawk.vm.Main", "j2se").
             setDescription("use Java based launcher to start Squawk VM");
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2004 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ * This is a part of the Squawk JVM.
+ */
+package com.sun.squawk.builder.commands;
+
+import java.io.*;
+import java.util.*;
+import com.sun.squawk.builder.*;
+import com.sun.squawk.builder.gen.Instruction;
+
+/**
+ * This is the command that selects superinstruction candidates from an opcode pair profile
+ * produced by running a profiling build of the VM with the <code>-Xprofpairs:&lt;file&gt;</code>
+ * option.
+ * <p>
+ * All 256 one byte opcodes are allocated, so a superinstruction can only be given a one byte
+ * opcode if an existing instruction is moved into the escaped opcode range. Each extra
+ * dispatch saved by a superinstruction is therefore weighed against the extra dispatch of
+ * the escape prefix that would be paid by the least frequently executed one byte
+ * instructions. That cost is taken from the profile's count of every dispatch of the displaced
+ * instruction, not just the dispatches that followed another instruction in the same frame.
+ * <p>
+ * This command only reports candidates. The instruction set has no superinstructions:
+ * adding one means a new opcode in the OPC generator, its interpreter routine, support for
+ * it in the translator's InstructionEmitter and verifier, and regenerating the opcode tables
+ * and every saved suite. That is left until profiles of the target workloads show which
+ * pairs, if any, save more dispatches than the escape prefixes they would add.
+ */
+public class SuperinstructionsCommand extends Command {
+
+    /**
+     * The maximum number of candidates reported.
+     */
+    private int top;
+
+    public SuperinstructionsCommand(Build env) {
+        super(env, "superinstructions");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getDescription() {
+        return "selects superinstruction candidates from an opcode pair profile";
+    }
+
+    /**
+     * Displays usage message.
+     *
+     * @param errMsg  an error message printed first if it is not null.
+     */
+    private void usage(String errMsg) {
+        PrintStream out = System.out;
+        if (errMsg != null) {
+            out.println(errMsg);
+        }
+        out.println("usage: superinstructions [-options] profile");
+        out.println("where options include:");
+        out.println();
+        out.println("    -top:<n>   report at most 'n' candidates (default=16)");
+        out.println("    -h         display this help message and exit");
+        out.println();
+        out.println("The profile is produced by running a profiling build of the VM");
+        out.println("with the -Xprofpairs:<file> option. The candidates are only");
+        out.println("reported; the VM does not implement any superinstructions.");
+        out.println();
+    }
+
+    /**
+     * A pair of one byte opcodes that could be fused into a single superinstruction.
+     */
+    static class Candidate {
+        final Instruction first;
+        final Instruction second;
+        final long count;
+
+        Candidate(Instruction first, Instruction second, long count) {
+            this.first = first;
+            this.second = second;
+            this.count = count;
+        }
+
+        String getMnemonic() {
+            return first.mnemonic + "__" + second.mnemonic;
+        }
+    }
+
+    /**
+     * Determines if an instruction is a prefix to another instruction.
+     *
+     * @param instruction  the instruction to test
+     * @return true if <code>instruction</code> is a wide or escape prefix
+     */
+    private static boolean isPrefix(Instruction instruction) {
+        return instruction.iparm == Instruction.IParm.P;
+    }
+
+    /**
+     * Determines if two instructions can be fused into a superinstruction. The first
+     * instruction must always fall through to the second and the pair can use at most
+     * one immediate parameter as the interpreter only has one immediate parameter register.
+     *
+     * @param first   the first instruction in the pair
+     * @param second  the second instruction in the pair
+     * @return true if <code>first</code> and <code>second</code> can be fused
+     */
+    private static boolean isFusable(Instruction first, Instruction second) {
+        if (isPrefix(first) || isPrefix(second) || first.flow != Instruction.Flow.NEXT) {
+            return false;
+        }
+        if (first.iparm == Instruction.IParm.T || second.iparm == Instruction.IParm.T) {
+            return false;
+        }
+        return first.iparm.size == 0 || second.iparm.size == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void run(String[] args) {
+        top = 16;
+
+        int argc = 0;
+        while (args.length != argc) {
+            String arg = args[argc];
+            if (arg.charAt(0) != '-') {
+                break;
+            } else if (arg.startsWith("-top:")) {
+                try {
+                    top = Integer.parseInt(arg.substring("-top:".length()));
+                } catch (NumberFormatException e) {
+                    usage("Invalid count: " + arg);
+                    return;
+                }
+            } else if (arg.equals("-h")) {
+                usage(null);
+                return;
+            } else {
+                usage("Invalid option: " + arg);
+                return;
+            }
+            argc++;
+        }
+
+        if (argc != args.length - 1) {
+            usage("missing profile");
+            return;
+        }
+
+        Map instructions = new HashMap();
+        for (Iterator iterator = Instruction.getAllInstructions().iterator(); iterator.hasNext(); ) {
+            Instruction instruction = (Instruction)iterator.next();
+            if (instruction.opcode < 256) {
+                instructions.put(instruction.mnemonic, instruction);
+            }
+        }
+
+        long[] dispatches = new long[256];
+        long total = 0;
+        List candidates = new ArrayList();
+        File profile = new File(args[argc]);
+        try {
+            BufferedReader br = new BufferedReader(new FileReader(profile));
+            String line;
+            int lineNo = 1;
+            while ((line = br.readLine()) != null) {
+                StringTokenizer st = new StringTokenizer(line);
+                int tokens = st.countTokens();
+                if (tokens == 2) {
+
+                    // The number of times an opcode was dispatched, whatever preceded it
+                    Instruction instruction = (Instruction)instructions.get(st.nextToken());
+                    if (instruction == null) {
+                        throw new BuildException(profile + ":" + lineNo + ": unknown opcode (profile is from a different instruction set?)");
+                    }
+                    long count = Long.parseLong(st.nextToken());
+                    dispatches[instruction.opcode] += count;
+                    total += count;
+                } else if (tokens == 3) {
+                    Instruction first = (Instruction)instructions.get(st.nextToken());
+                    Instruction second = (Instruction)instructions.get(st.nextToken());
+                    if (first == null || second == null) {
+                        throw new BuildException(profile + ":" + lineNo + ": unknown opcode (profile is from a different instruction set?)");
+                    }
+                    long count = Long.parseLong(st.nextToken());
+                    if (isFusable(first, second)) {
+                        candidates.add(new Candidate(first, second, count));
+                    }
+                } else {
+                    throw new BuildException(profile + ":" + lineNo + ": expected 'opcode count' or 'first second count'");
+                }
+                lineNo++;
+            }
+            br.close();
+            if (total == 0) {
+                throw new BuildException(profile + " has no opcode dispatch counts (profile is from an older VM?)");
+            }
+        } catch (NumberFormatException e) {
+            throw new BuildException("invalid count in " + profile, e);
+        } catch (IOException e) {
+            throw new BuildException("IO error reading " + profile, e);
+        }
+
+        Collections.sort(candidates, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                long c1 = ((Candidate)o1).count;
+                long c2 = ((Candidate)o2).count;
+                return c1 < c2 ? 1 : c1 > c2 ? -1 : 0;
+            }
+        });
+
+        // Any instruction in a selected pair must keep its one byte opcode
+        Set retained = new HashSet();
+        int selected = Math.min(top, candidates.size());
+        for (int i = 0; i != selected; ++i) {
+            Candidate candidate = (Candidate)candidates.get(i);
+            retained.add(candidate.first);
+            retained.add(candidate.second);
+        }
+
+        List evictable = new ArrayList();
+        for (Iterator iterator = instructions.values().iterator(); iterator.hasNext(); ) {
+            Instruction instruction = (Instruction)iterator.next();
+            if (!isPrefix(instruction) && !retained.contains(instruction)) {
+                evictable.add(instruction);
+            }
+        }
+        final long[] freq = dispatches;
+        Collections.sort(evictable, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                long c1 = freq[((Instruction)o1).opcode];
+                long c2 = freq[((Instruction)o2).opcode];
+                return c1 < c2 ? -1 : c1 > c2 ? 1 : ((Instruction)o1).opcode - ((Instruction)o2).opcode;
+            }
+        });
+
+        PrintStream out = System.out;
+        out.println("Dispatches profiled: " + total);
+        out.println();
+        out.println(pad("superinstruction", 40) + pad("saved", 14) + pad("evicts", 24) + pad("cost", 14) + "net");
+
+        long netTotal = 0;
+        int i = 0;
+        while (i != selected && i != evictable.size()) {
+            Candidate candidate = (Candidate)candidates.get(i);
+            Instruction evictee = (Instruction)evictable.get(i);
+            long cost = dispatches[evictee.opcode];
+            long net = candidate.count - cost;
+            if (net <= 0) {
+                break;
+            }
+            netTotal += net;
+            out.println(pad(candidate.getMnemonic(), 40) + pad("" + candidate.count, 14) + pad(evictee.mnemonic, 24) + pad("" + cost, 14) + net);
+            i++;
+        }
+
+        out.println();
+        if (i == 0) {
+            out.println("No superinstruction saves more dispatches than it costs.");
+        } else {
+            long percent = total == 0 ? 0 : (netTotal * 10000) / total;
+            out.println("Estimated dispatches saved: " + netTotal + " (" + (percent / 100) + "." + (percent % 100 < 10 ? "0" : "") + (percent % 100) + "%)");
+            out.println("Overlapping pairs compete for the same dispatches so this is an upper bound.");
+        }
+    }
+
+    /**
+     * Pads a given string up to a given length with trailing spaces.
+     *
+     * @param s       the string to pad
+     * @param length  the size to which <code>s</code> should be padded
+     * @return  the padded string
+     */
+    private static String pad(String s, int length) {
+        StringBuffer buf = new StringBuffer(s);
+        while (buf.length() < length) {
+            buf.append(' ');
+        }
+        return buf.toString();
+    }
+}
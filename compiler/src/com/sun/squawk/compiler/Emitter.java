@@ -262,6 +262,30 @@ class Emitter implements Constants, Codes, ShadowStackConstants, Types {
         }
     }
 
+    /**
+     * Spills a register into a new slot of the stack frame and frees the register.
+     * The size of the stack frame is back-patched when the method is left.
+     *
+     * @param reg  the 32-bit or long register to spill
+     * @param type the type of the value in the register
+     * @return the slot holding the spilled value
+     */
+    public Local spill(Register reg, Type type) {
+        if (type.getStructureSize() != (reg.isLong() ? 8 : 4)) {
+            type = reg.isLong() ? LONG : INT;
+        }
+        Local slot = comp.local(type);
+        Address addr = ((X86XLocal)slot).addressOf();
+        if (reg.isLong()) {
+            asm.movl(addr, ralloc.registerLo(reg));
+            asm.movl(addr.offsetFrom(4), ralloc.registerHi(reg));
+        } else {
+            asm.movl(addr, reg);
+        }
+        ralloc.freeReg(reg);
+        return slot;
+    }
+
     // allocates local MP, which is always pre-allocated at slot 0 in the
     // activation record
     // NB: for the E_REGISTER case, register eax holds the address of the
@@ -654,36 +678,46 @@ class Emitter implements Constants, Codes, ShadowStackConstants, Types {
      */
 
     // free up regToFree and update the symbolic register entry in the shadow stack
-    // **** need 64 bit version of this ***
     //
-    // NB: there is an error in this method when the register that is being
-    //     used to spill onto (reg) is not on the shadow stack or is regToFree.
-    //     This can happen with binops, where you pop both values off the
-    //     stack, one of them is regToFree and the other may be reg.  ***** Needs fixing
-    //                                                                ***** may happen in division
+    // NB: there is an error in this method when regToFree is not on the shadow
+    //     stack.  This can happen with binops, where you pop both values off the
+    //     stack and one of them is regToFree.  ***** Needs fixing
+    //                                          ***** may happen in division
     private void freeUpRegister(Register regToFree, Stack shadowStk) {
         if (!ralloc.regIsFree(regToFree)) {
-            // spill regToFree onto another reg
-            Register reg = ralloc.nextAvailableRegister();
-            asm.movl(reg, regToFree);
-            ralloc.useReg(reg);
-
-            // update the regToFree reference in the shadow stack
+            // find the regToFree reference in the shadow stack
+            SymbolicRegister symbReg = null;
             int i = shadowStk.size();
-            boolean found = false;
-            while ( (!found) && (i > 0)) {
+            while ((symbReg == null) && (i-- > 0)) {
                 SymbolicValueDescriptor symb = (SymbolicValueDescriptor)
                     shadowStk.elementAt(i);
                 if (symb.getSymbolicValueDescriptor() == S_REG) {
-                    SymbolicRegister32 symbReg = (SymbolicRegister32) symb;
-                    if (symbReg.getRegister() == regToFree) {
-                        found = true;
-                        symbReg.setRegister(reg);
-                        shadowStk.setElementAt(symbReg, i);
+                    Register reg = ((SymbolicRegister)symb).getRegister();
+                    if (reg == regToFree || (reg.isLong() &&
+                        (ralloc.registerHi(reg) == regToFree || ralloc.registerLo(reg) == regToFree))) {
+                        symbReg = (SymbolicRegister)symb;
+                    }
+                }
+            }
+
+            if (symbReg != null && symbReg.getRegister().isLong()) {
+                // a long register cannot be split; spill it onto the stack frame
+                ralloc.spillRegister(regToFree);
+            } else {
+                // spill regToFree onto another reg, unless the register allocator
+                // had to spill regToFree onto the stack frame to find one
+                Register reg = ralloc.nextAvailableRegister();
+                if (!ralloc.regIsFree(regToFree)) {
+                    asm.movl(reg, regToFree);
+                    ralloc.useReg(reg);
+                    if (symbReg != null) {
+                        ((SymbolicRegister32)symbReg).setRegister(reg);
                     }
                 }
-                i--;
             }
+
+            // regToFree is now reserved for the caller
+            ralloc.useReg(regToFree);
         }
     }
 
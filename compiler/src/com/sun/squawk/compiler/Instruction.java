@@ -73,8 +73,9 @@ class Instruction implements Constants, Codes, ShadowStackConstants, Types {
      * Constructor
      */
     public Instruction(Compiler compiler) {
-        ralloc = new RegisterAllocator();
+        ralloc = new RegisterAllocator((X86Compiler)compiler);
         emitter = new Emitter(ralloc, compiler);
+        ralloc.setEmitter(emitter);
         SSslot = null;
         fixupInfo = new Hashtable();
     }
@@ -553,7 +554,13 @@ class Instruction implements Constants, Codes, ShadowStackConstants, Types {
 
     private SymbolicValueDescriptor readIntegral(SymbolicValueDescriptor val,
                                                  Type type, Type resultType) {
-        Register dstReg = ralloc.nextAvailableRegister();
+        // the address register is consumed by the read, so it can hold the result
+        Register hint = NO_REG;
+        if (val.getSymbolicValueDescriptor() == S_REG) {
+            hint = ((SymbolicRegister)val).getRegister();
+            ralloc.freeReg(hint);
+        }
+        Register dstReg = ralloc.nextAvailableRegister(hint);
         ralloc.useReg(dstReg);
         readLiteral(val, dstReg, type);
         return new SymbolicRegister32(dstReg, resultType);
@@ -2174,13 +2181,18 @@ class Instruction implements Constants, Codes, ShadowStackConstants, Types {
      *
      * This function is X86-dependent; it relies on the stack frame format.
      * Parameters have positive offsets from EBP, starting at location 8.
-     * Locals have negative offsets from EBP, starting at location -4 (word-aligned).
+     * Locals have negative offsets from EBP, starting at location -4 (word-aligned)
+     * for 32-bit values, and at location -8 for 64-bit values (as in X86XLocal).
      *
      */
     private int getOffset(Local local) {
         XLocal loc = (XLocal)local;
         int offset = loc.getSlotOffset();
-        offset = (loc.isParam()) ? 8 /* stack frame delta */ + offset : -offset - 4;
+        if (loc.isParam()) {
+            offset = 8 /* stack frame delta */ + offset;
+        } else {
+            offset = -offset - ((loc.getType().getStructureSize() == 8) ? 8 : 4);
+        }
         // ** NB: the offset for locals on the stack has not been tested **/
         return offset;
     }
@@ -20,14 +20,57 @@ import com.sun.squawk.compiler.asm.x86.Register;
  * Straight-line register allocator for the X86 (32-bit) architecture.
  * This is a simple register allocator that returns the next available register.
  *
+ * When no register is available, the value held in a register that is deepest
+ * in the shadow stack is spilled into a new slot of the stack frame and its
+ * entry in the shadow stack is replaced by that slot.  As the compiler generates
+ * code for a stack machine, the deepest value is the one whose use is furthest
+ * away, which makes it the value that linear scan allocation would spill.
+ * Values held in registers that have been popped from the shadow stack are
+ * operands of the instruction being emitted and are never spilled.
+ *
  * @author Cristina Cifuentes
  */
-class RegisterAllocator implements Constants {
+class RegisterAllocator implements Constants, ShadowStackConstants {
     /**
      * List of registers in use during code generation
      */
     private boolean[] availRegs;
 
+    /**
+     * The 32-bit registers in the order they are allocated.
+     */
+    private static final Register[] REGISTERS = { EAX, EDX, ECX, EBX, ESI, EDI };
+
+    /**
+     * The 32-bit registers that have a byte (8-bit) or short (16-bit) form.
+     */
+    private static final Register[] PART_REGISTERS = { EAX, EDX, ECX, EBX };
+
+    /**
+     * The long registers in the order they are allocated.
+     */
+    private static final Register[] LONG_REGISTERS = { EDIESI, EBXECX, EDXEAX };
+
+    /**
+     * The spill cost of a register that is available.
+     */
+    private static final int FREE = -1;
+
+    /**
+     * The spill cost of a register that holds a value that cannot be spilled.
+     */
+    private static final int NOT_SPILLABLE = Integer.MAX_VALUE;
+
+    /**
+     * The compiler whose shadow stack holds the values that can be spilled
+     */
+    private X86Compiler comp;
+
+    /**
+     * The emitter used to store spilled values into the stack frame
+     */
+    private Emitter emitter;
+
     /**
      * Number of registers used for register allocation, including long registers,
      * which are a combination of two general-purpose registers.
@@ -38,23 +81,47 @@ class RegisterAllocator implements Constants {
 
     /**
      * Constructor
+     *
+     * @param compiler the compiler for which registers are allocated
      */
-    public RegisterAllocator() {
+    public RegisterAllocator(X86Compiler compiler) {
         availRegs = new boolean[NUM_REGISTERS];
+        comp = compiler;
         freeAllRegs();
     }
 
     /**
-     * Finds the next available 32-bit register and returns it.
+     * Sets the emitter used to spill values into the stack frame.
+     *
+     * @param emitter the emitter
+     */
+    public void setEmitter(Emitter emitter) {
+        this.emitter = emitter;
+    }
+
+    /**
+     * Finds the next available 32-bit register and returns it, spilling
+     * a value if none is available.
      *
-     * @return a 32-bit register or NO_REG if none is available.
+     * @return a 32-bit register
      */
     public Register nextAvailableRegister() {
-        for (int i = 0; i < availRegs.length; i++) {
-            if (availRegs[i] == true)
-                return registerFor(i);
+        return allocate(REGISTERS);
+    }
+
+    /**
+     * Finds the next available 32-bit register, preferring the given register.
+     * The hint is usually the register of an operand that is consumed by the
+     * instruction the register is allocated for.
+     *
+     * @param hint the preferred register
+     * @return a 32-bit register
+     */
+    public Register nextAvailableRegister(Register hint) {
+        if (indexForRegister(hint) != -1 && regIsFree(hint)) {
+            return hint;
         }
-        throw new RuntimeException("No register available; need to spill");
+        return nextAvailableRegister();
     }
 
     /**
@@ -63,12 +130,7 @@ class RegisterAllocator implements Constants {
      * @return 32-bit register
      */
     private Register nextAvailablePartRegister() {
-        for (int i = 0; i < availRegs.length; i++) {
-            if ((availRegs[i] == true) && (registerHasShortForm(i))) {
-                return registerFor(i);
-            }
-        }
-        throw new RuntimeException("No register available; need to spill");
+        return allocate(PART_REGISTERS);
     }
 
     public Register nextAvailableByteRegister() {
@@ -80,14 +142,115 @@ class RegisterAllocator implements Constants {
     }
 
     public Register nextAvailableLongRegister() {
-        if (availRegs[indexForRegister(EDI)] && availRegs[indexForRegister(ESI)])
-            return EDIESI;
-        else if (availRegs[indexForRegister(EBX)] && availRegs[indexForRegister(ECX)])
-            return EBXECX;
-        else if (availRegs[indexForRegister(EDX)] && availRegs[indexForRegister(EAX)])
-            return EDXEAX;
-        else
-            throw new RuntimeException("No long register available; need to use local");
+        return allocate(LONG_REGISTERS);
+    }
+
+    /**
+     * Returns the first of the given registers that is available.  If none is
+     * available, the register (or register pair) whose values are deepest in the
+     * shadow stack is freed by spilling these values.
+     *
+     * @param candidates the registers to choose from, in order of preference
+     * @return the allocated register
+     */
+    private Register allocate(Register[] candidates) {
+        Register best = NO_REG;
+        int bestCost = NOT_SPILLABLE;
+        for (int i = 0; i < candidates.length; i++) {
+            Register reg = candidates[i];
+            int cost;
+            if (reg.isLong()) {
+                cost = Math.max(spillCost(registerHi(reg)), spillCost(registerLo(reg)));
+            } else {
+                cost = spillCost(reg);
+            }
+            if (cost == FREE) {
+                return reg;
+            }
+            if (cost < bestCost) {
+                best = reg;
+                bestCost = cost;
+            }
+        }
+        if (best == NO_REG) {
+            throw new RuntimeException("No register available and no value can be spilled");
+        }
+        if (best.isLong()) {
+            spillRegister(registerHi(best));
+            spillRegister(registerLo(best));
+        } else {
+            spillRegister(best);
+        }
+        return best;
+    }
+
+    /**
+     * Determines the cost of freeing a 32-bit register, which is the depth in the
+     * shadow stack of the value it holds.
+     *
+     * @param reg the register
+     * @return FREE if the register is available, NOT_SPILLABLE if its value cannot be
+     *         spilled, or the index of its value in the shadow stack otherwise
+     */
+    private int spillCost(Register reg) {
+        if (regIsFree(reg)) {
+            return FREE;
+        }
+        ShadowStack shadowStk = X86Compiler.shadowStk;
+        int cost = NOT_SPILLABLE;
+        for (int i = shadowStk.size() - 1; i >= 0; i--) {
+            SymbolicValueDescriptor value = (SymbolicValueDescriptor)shadowStk.elementAt(i);
+            if (value.getSymbolicValueDescriptor() == S_REG) {
+                SymbolicRegister symbReg = (SymbolicRegister)value;
+                if (holds(symbReg.getRegister(), reg)) {
+                    // values pushed onto the runtime stack around a call, or that a
+                    // pending forward branch expects in this register, must stay put
+                    if (symbReg.isSpilled() || comp.isLiveAtForwardBranch(value)) {
+                        return NOT_SPILLABLE;
+                    }
+                    cost = i;
+                }
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Spills the values held in a 32-bit register into a new slot of the stack frame,
+     * replacing their entries in the shadow stack by the slot, and frees the register.
+     * If the register is part of a long register, the long value is spilled.
+     *
+     * @param reg the register to free
+     */
+    public void spillRegister(Register reg) {
+        ShadowStack shadowStk = X86Compiler.shadowStk;
+        SymbolicLocal slot = null;
+        for (int i = 0; i < shadowStk.size(); i++) {
+            SymbolicValueDescriptor value = (SymbolicValueDescriptor)shadowStk.elementAt(i);
+            if (value.getSymbolicValueDescriptor() == S_REG) {
+                SymbolicRegister symbReg = (SymbolicRegister)value;
+                if (holds(symbReg.getRegister(), reg)) {
+                    if (slot == null) {
+                        slot = new SymbolicLocal(emitter.spill(symbReg.getRegister(), symbReg.getType()));
+                    }
+                    shadowStk.setElementAt(slot, i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Determines if a register holds the contents of a 32-bit register.
+     *
+     * @param held the 32-bit or long register
+     * @param reg  the 32-bit register
+     * @return true if held is reg or is a long register that includes reg
+     */
+    private boolean holds(Register held, Register reg) {
+        if (held.isLong()) {
+            return registerHi(held) == reg || registerLo(held) == reg;
+        }
+        return held == reg;
     }
 
     private void freePhysicalReg(Register reg) {
@@ -230,18 +393,4 @@ class RegisterAllocator implements Constants {
         return false;
     }
 
-    /**
-     * Determines if the given register has a byte (8-bit) or short (16-bit) form.
-     *
-     * @param regIndex the index of the register to be checked.
-     * @return true if reg has a byte or short form, false otherwise.
-     */
-    private boolean registerHasShortForm(int regIndex) {
-        Register reg = registerFor(regIndex);
-        if (reg == EAX || reg == EBX || reg == ECX || reg == EDX) {
-            return true;
-        }
-        return false;
-    }
-
 }
\ No newline at end of file
@@ -11,6 +11,7 @@
 
 package com.sun.squawk.compiler;
 
+import java.util.Enumeration;
 import java.util.Hashtable;
 import com.sun.squawk.util.Assert;
 import com.sun.squawk.compiler.Compiler;
@@ -205,7 +206,7 @@ class X86Compiler extends AbstractX86Compiler implements Codes, ShadowStackConst
      * can have something on the stack.
      */
     public Compiler bind(Label label) {
-        ShadowStack stackcp = (ShadowStack)forwardBranchInfo.get(label);
+        ShadowStack stackcp = (ShadowStack)forwardBranchInfo.remove(label);
         if (stackcp != null) { // the label was in the hash table
             shadowStk = stackcp;
         }
@@ -214,6 +215,23 @@ class X86Compiler extends AbstractX86Compiler implements Codes, ShadowStackConst
         return this;
     }
 
+    /**
+     * Determines if a value on the shadow stack is also on the shadow stack saved
+     * for a forward branch to a label that has not been bound yet.  The code at
+     * the label expects such a value to be where it was when the branch was emitted.
+     *
+     * @param value the shadow stack entry
+     * @return true if the entry is on the shadow stack of a pending forward branch
+     */
+    boolean isLiveAtForwardBranch(SymbolicValueDescriptor value) {
+        for (Enumeration e = forwardBranchInfo.elements(); e.hasMoreElements(); ) {
+            if (((ShadowStack)e.nextElement()).contains(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /*-----------------------------------------------------------------------*\
      *                           Function definition                         *
     \*-----------------------------------------------------------------------*/
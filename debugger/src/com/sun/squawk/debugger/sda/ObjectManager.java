@@ -33,7 +33,7 @@ public class ObjectManager {
      * The table mapping objects that may move or be collected to identifiers and vice-versa.
      * Objects in this table may be garbage collected at any time.
      */
-    private final WeakIntHashtable objects;
+    private final WeakIdentityIntHashtable objects;
 
     /**
      * The ID allocator for objects.
@@ -41,7 +41,7 @@ public class ObjectManager {
     int objectIDCounter = 1;
 
     public ObjectManager() {
-        objects = new WeakIntHashtable();
+        objects = new WeakIdentityIntHashtable();
     }
 
     /**
@@ -65,11 +65,9 @@ public class ObjectManager {
             int objectID = -romObjectID;
             return objectID;
         } else {
-            // This could be a performance problem at some point (allocates Integers until object is found).
-            // Consider using an IntHashTableVisitor (or searching varient) at some point.
-            Integer objectID = objects.getKey(object);
+            int objectID = objects.getKey(object);
 
-            if (objectID == null) {
+            if (objectID == 0) {
                 int newObjectID;
                 synchronized (this) {
                     newObjectID = objectIDCounter++;
@@ -79,7 +77,7 @@ public class ObjectManager {
                 Assert.that(oldVal == null);
                 return newObjectID;
             }
-            return objectID.intValue();
+            return objectID;
         }
     }
 
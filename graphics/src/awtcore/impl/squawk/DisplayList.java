@@ -0,0 +1,148 @@
+package awtcore.impl.squawk;
+
+import com.sun.squawk.*;
+import com.sun.squawk.vm.ChannelConstants;
+
+/**
+ * Records the drawing operations of GraphicsImpl so that they can be sent to the GUI output
+ * channel in a single DRAWDISPLAYLIST operation instead of one channel operation each.
+ * The list is flushed by ToolkitImpl once a frame has been painted, before the screen is
+ * flushed and before any image is updated. So that drawing done outside of the AWT thread's
+ * repaint loop is not held back until the next frame, the list is also flushed when it is
+ * full and when an operation is added more than {@link #MAX_DELAY} milliseconds after the
+ * first operation in the list was recorded.
+ * <p>
+ * Each entry in the list is the opcode of the drawing operation, the number of arguments
+ * and then the arguments. The arguments of DRAWSTRING are the position followed by the
+ * characters of the string and the arguments of FILLPOLYGON are the point count followed by
+ * the x and then the y coordinates.
+ * <p>
+ * If the GRAPHICSDISPLAYLIST build property is false, each operation is executed immediately.
+ */
+final class DisplayList {
+
+    /**
+     * Specifies if drawing operations are batched.
+     */
+    private static final boolean ENABLED = /*VAL*/false/*GRAPHICSDISPLAYLIST*/;
+
+    /**
+     * The initial size of the list. A list is also flushed when it is full.
+     */
+    private static final int INITIAL_SIZE = 2048;
+
+    /**
+     * The time (in milliseconds) after which the operations in the list are sent when
+     * another operation is added.
+     */
+    private static final int MAX_DELAY = 20;
+
+    /**
+     * The time at which the first operation in the list was recorded.
+     */
+    private static long firstTime;
+
+    /**
+     * The recorded operations.
+     */
+    private static int[] list = new int[INITIAL_SIZE];
+
+    /**
+     * The number of entries of <code>list</code> in use.
+     */
+    private static int count;
+
+    private DisplayList() {
+    }
+
+    /**
+     * Makes room for an operation with a given number of arguments, flushing the list
+     * if necessary, and records the opcode and argument count.
+     */
+    private static void begin(int op, int argc) {
+        int size = argc + 2;
+        if (count + size > list.length) {
+            flush();
+            if (size > list.length) {
+                list = new int[size];
+            }
+        }
+        if (count == 0) {
+            firstTime = System.currentTimeMillis();
+        } else if (System.currentTimeMillis() - firstTime > MAX_DELAY) {
+            flush();
+            firstTime = System.currentTimeMillis();
+        }
+        list[count++] = op;
+        list[count++] = argc;
+    }
+
+    /**
+     * Records a drawing operation that takes only int arguments.
+     *
+     * @param op    the opcode
+     * @param argc  the number of arguments used by the operation (at most 6)
+     */
+    static synchronized void add(int op, int argc, int i1, int i2, int i3, int i4, int i5, int i6) {
+        if (!ENABLED) {
+            VM.execGraphicsIO(op, i1, i2, i3, i4, i5, i6, null, null);
+            return;
+        }
+        begin(op, argc);
+        switch (argc) {
+            case 6: list[count + 5] = i6;
+            case 5: list[count + 4] = i5;
+            case 4: list[count + 3] = i4;
+            case 3: list[count + 2] = i3;
+            case 2: list[count + 1] = i2;
+            case 1: list[count]     = i1;
+        }
+        count += argc;
+    }
+
+    /**
+     * Records a DRAWSTRING operation.
+     */
+    static synchronized void addString(String text, int x, int y) {
+        if (!ENABLED) {
+            VM.execGraphicsIO(ChannelConstants.DRAWSTRING, x, y, 0, 0, 0, 0, text, null);
+            return;
+        }
+        int length = text.length();
+        begin(ChannelConstants.DRAWSTRING, length + 2);
+        list[count++] = x;
+        list[count++] = y;
+        for (int i = 0; i < length; i++) {
+            list[count++] = text.charAt(i);
+        }
+    }
+
+    /**
+     * Records a FILLPOLYGON operation.
+     */
+    static synchronized void addPolygon(int[] x, int[] y, int pointCount) {
+        if (!ENABLED) {
+            int[] comb = new int[x.length + y.length];
+            System.arraycopy(x, 0, comb, 0, x.length);
+            System.arraycopy(y, 0, comb, x.length, y.length);
+            VM.execGraphicsIO(ChannelConstants.FILLPOLYGON, pointCount, 0, 0, 0, 0, 0, comb, null);
+            return;
+        }
+        begin(ChannelConstants.FILLPOLYGON, x.length + y.length + 1);
+        list[count++] = pointCount;
+        System.arraycopy(x, 0, list, count, x.length);
+        count += x.length;
+        System.arraycopy(y, 0, list, count, y.length);
+        count += y.length;
+    }
+
+    /**
+     * Sends the recorded operations to the GUI output channel and empties the list.
+     */
+    static synchronized void flush() {
+        if (count != 0) {
+            VM.execGraphicsIO(ChannelConstants.DRAWDISPLAYLIST, count, 0, 0, 0, 0, 0, list, null);
+            count = 0;
+        }
+    }
+}
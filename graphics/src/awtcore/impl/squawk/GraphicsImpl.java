@@ -239,50 +239,43 @@ public class GraphicsImpl extends Graphics {
 
 
     private void setFont0(int fontID) {
-        VM.execGraphicsIO(ChannelConstants.SETFONT, fontID, 0, 0, 0, 0, 0, null, null);
+        DisplayList.add(ChannelConstants.SETFONT, 1, fontID, 0, 0, 0, 0, 0);
     }
     private void setColor0(int rgb) {
-        VM.execGraphicsIO(ChannelConstants.SETCOLOR, rgb, 0, 0, 0, 0, 0, null, null);
+        DisplayList.add(ChannelConstants.SETCOLOR, 1, rgb, 0, 0, 0, 0, 0);
     }
     private void setClip0(int x, int y, int width, int height) {
-        VM.execGraphicsIO(ChannelConstants.SETCLIP, x, y, width, height, 0, 0, null, null);
+        DisplayList.add(ChannelConstants.SETCLIP, 4, x, y, width, height, 0, 0);
     }
     private void drawString0(String text, int x, int y) {
-        VM.execGraphicsIO(ChannelConstants.DRAWSTRING, x, y, 0, 0, 0, 0, text, null);
+        DisplayList.addString(text, x, y);
     }
     private void drawLine0(int x1, int y1, int x2, int y2) {
-        VM.execGraphicsIO(ChannelConstants.DRAWLINE, x1, y1, x2, y2, 0, 0, null, null);
+        DisplayList.add(ChannelConstants.DRAWLINE, 4, x1, y1, x2, y2, 0, 0);
     }
     private void drawOval0(int x, int y, int width, int height) {
-        VM.execGraphicsIO(ChannelConstants.DRAWOVAL, x, y, width, height, 0, 0, null, null);
+        DisplayList.add(ChannelConstants.DRAWOVAL, 4, x, y, width, height, 0, 0);
     }
     private void drawRect0(int x,  int y, int width, int height) {
-        VM.execGraphicsIO(ChannelConstants.DRAWRECT, x, y, width, height, 0, 0, null, null);
+        DisplayList.add(ChannelConstants.DRAWRECT, 4, x, y, width, height, 0, 0);
     }
     private void fillRect0(int x, int y, int width, int height) {
-        VM.execGraphicsIO(ChannelConstants.FILLRECT, x, y, width, height, 0, 0, null, null);
+        DisplayList.add(ChannelConstants.FILLRECT, 4, x, y, width, height, 0, 0);
     }
     private void drawRoundRect0(int x, int y, int width, int height, int arcWidth, int arcHeight) {
-        VM.execGraphicsIO(ChannelConstants.DRAWROUNDRECT, x, y, width, height, arcWidth, arcHeight, null, null);
+        DisplayList.add(ChannelConstants.DRAWROUNDRECT, 6, x, y, width, height, arcWidth, arcHeight);
     }
     private void fillRoundRect0(int x, int y, int width, int height, int arcWidth, int arcHeight) {
-        VM.execGraphicsIO(ChannelConstants.FILLROUNDRECT, x, y, width, height, arcWidth, arcHeight, null, null);
+        DisplayList.add(ChannelConstants.FILLROUNDRECT, 6, x, y, width, height, arcWidth, arcHeight);
     }
     private void drawImage0(int imageIndex, int x, int y) {
-        VM.execGraphicsIO(ChannelConstants.DRAWIMAGE, imageIndex, x, y, 0, 0, 0, null, null);
+        DisplayList.add(ChannelConstants.DRAWIMAGE, 3, imageIndex, x, y, 0, 0, 0);
     }
     private void fillArc0(int x, int y, int width, int height, int ba, int ea) {
-        VM.execGraphicsIO(ChannelConstants.FILLARC, x, y, width, height, ba, ea, null, null);
+        DisplayList.add(ChannelConstants.FILLARC, 6, x, y, width, height, ba, ea);
     }
     private void fillPolygon0(int[] x, int[] y, int count) {
-        int[] comb = new int[x.length + y.length];
-        for (int i = 0 ; i < x.length ; i++) {
-            comb[i] = x[i];
-        }
-        for (int i = 0 ; i < y.length ; i++) {
-            comb[x.length+i] = y[i];
-        }
-        VM.execGraphicsIO(ChannelConstants.FILLPOLYGON, count, 0, 0, 0, 0, 0, comb, null);
+        DisplayList.addPolygon(x, y, count);
     }
 }
 
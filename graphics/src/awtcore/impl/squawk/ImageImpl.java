@@ -58,6 +58,7 @@ public class ImageImpl extends Image {
         return (int)VM.execGraphicsIO(ChannelConstants.IMAGEHEIGHT, number, 0, 0, 0, 0, 0, null, null);
     }
     private void flush0(int number, int[] image) {
+        DisplayList.flush(); // pending drawImage operations must use the old contents
         VM.execGraphicsIO(ChannelConstants.FLUSHIMAGE, number, 0, 0, 0, 0, 0, image, null);
     }
 
@@ -31,11 +31,12 @@ public class ToolkitImpl extends Toolkit {
         return new awtcore.impl.squawk.ImageImpl(data, offset, length);
     }
 
-    //public void sync() {
-    //    if (GraphicsImpl.dirty) {
-    //        repaint();
-    //    }
-    //}
+    /**
+     * Sends the drawing operations recorded for the frame that has just been painted.
+     */
+    public void sync() {
+        DisplayList.flush();
+    }
 
     public Image createImage (ImageProducer producer) {
         return new ImageImpl((MemoryImageSource )producer);
@@ -57,6 +58,7 @@ public class ToolkitImpl extends Toolkit {
         VM.execGraphicsIO(ChannelConstants.BEEP, 0, 0, 0, 0, 0, 0, null, null);
     }
     public void flushScreen() {
+        DisplayList.flush();
         VM.execGraphicsIO(ChannelConstants.FLUSHSCREEN, 0, 0, 0, 0, 0, 0, null, null);
     }
 
@@ -194,8 +194,8 @@ public abstract class Toolkit {
         Window top = getTopWindow ();
         if (top != null) {
         top.flushRepaint ();
-        defaultToolkit.sync ();
         }
+        defaultToolkit.sync ();
     }
     }
 
@@ -11,8 +11,12 @@
 package javax.microedition.rms;
 
 import java.io.*;
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.Vector;
+
+import javax.microedition.io.Connector;
+
+import com.sun.squawk.util.Arrays;
+import com.sun.squawk.util.IntHashtable;
 
 
 /**
@@ -45,99 +49,331 @@ import java.util.Hashtable;
  * Eric Arseneau:
  * Class cloned from JDK 1.0 and moved as package private here in order to simplify
  * implementation of {@link RecordStore} class.  Replaced references to FileNotFoundException
- * to {@link IOException}.  fd was replaced with a byte array of the actual content of the
- * file.  Merged in extra API added to RecordStoreFile as well.
+ * to {@link IOException}.  Merged in extra API added to RecordStoreFile as well.
+ * <p>
+ * The file is stored in the host file system and accessed with the "file" protocol of
+ * the channel I/O system. It is read and written in pages of <code>PAGE_SIZE</code>
+ * bytes, of which the <code>CACHE_PAGES</code> most recently used ones are kept in
+ * memory, so the heap used by a record store does not grow with its size.
+ * <p>
+ * The name of the file only depends on the name of the record store, so isolates
+ * running the same or different suites share their record stores. As the record
+ * store state is held in static fields, which are per isolate, a lock file next to
+ * the file is locked while it is open: opening or deleting a record store that is
+ * open in another isolate, or in another VM, fails. The lock is held by the host and
+ * released if the VM exits without closing the file.
+ * <p>
+ * Modified pages are written to the file by {@link #commit}, which the record store
+ * calls when it is closed, when it is asked to and after an update once enough pages
+ * have been modified or enough time has passed since the last commit. This groups
+ * the writes of many updates into one.
+ * <p>
+ * If the RMSJOURNAL build property is true, <code>commit</code> first writes the
+ * modified pages to a journal file and forces it to the storage device. Only then
+ * are the pages written to the file and the journal emptied. Opening a file whose
+ * journal is complete writes the journaled pages to it again, and an incomplete
+ * journal is ignored, so after a crash the file holds its contents as of the last
+ * commit. In this mode a modified page stays in memory until it is committed, so
+ * the cache grows past <code>CACHE_PAGES</code> while an update modifies more pages
+ * than it holds: writing a record of a few hundred kilobytes needs that much heap
+ * until the commit that follows it, which shrinks the cache back.
+ * Without the journal, a modified page is written to the file when it is evicted
+ * from the cache, and a crash can leave the file with only some of the pages of
+ * a commit.
  */
 
 class RandomAccessFile implements DataOutput, DataInput {
-    protected static Hashtable files = new Hashtable();
-    protected static final int FILE_SIZE_INCREMENT = 1024;
-    
-    protected byte[] fileBytes;
+
+    /** Specifies if the modifications are journaled. */
+    static final boolean JOURNAL = /*VAL*/true/*RMSJOURNAL*/;
+
+    /** The size of a page. */
+    static final int PAGE_SIZE = 4096;
+
+    /** The number of pages cached. */
+    static final int CACHE_PAGES = 32;
+
+    /** The number of modified pages that causes a commit after an update. */
+    static final int COMMIT_PAGES = CACHE_PAGES / 2;
+
+    /** The time (in milliseconds) after which an update causes a commit. */
+    static final int COMMIT_INTERVAL = 1000;
+
+    /** The suffix of the names of the files holding record stores. */
+    private static final String FILE_SUFFIX = ".rms";
+
+    /** The suffix appended to the name of a file to name its journal. */
+    private static final String JOURNAL_SUFFIX = ".jnl";
+
+    /** The suffix appended to the name of a file to name the file locked while it is open. */
+    private static final String LOCK_SUFFIX = ".lck";
+
+    /** The first word of a journal ("rmsj"). */
+    private static final int JOURNAL_MAGIC = 0x726D736A;
+
+    /**
+     * The space reported as available. The free space of the host
+     * file system cannot be queried through the channel.
+     */
+    private static final int SPACE_AVAILABLE = 0x10000000;
+
+    /** The name of the file in the host file system. */
+    private final String fileName;
+
+    /** The stream holding the lock on the host file while it is open. */
+    private OutputStream lock;
+
+    /** The cached pages indexed by page number. */
+    private IntHashtable pages = new IntHashtable(CACHE_PAGES * 2);
+
+    /** The most recently used cached page. */
+    private Page mru;
+
+    /** The least recently used cached page. */
+    private Page lru;
+
+    /** The number of modified pages. */
+    private int dirtyCount;
+
+    /** The time of the last commit. */
+    private long lastCommit = System.currentTimeMillis();
+
+    /** The length of the file including the modifications not yet committed. */
     protected int fileSize;
+
+    /** The length of the file in the host file system. */
+    private int storedSize;
+
+    /** The offset at which the next read or write occurs. */
     protected int filePointer;
 
-    public static boolean deleteFile(String filename) {
-        files.remove(filename);
-        return true;
+    /**
+     * A cached page of the file.
+     */
+    private static final class Page {
+
+        /** The page's number (its offset in the file divided by <code>PAGE_SIZE</code>). */
+        int number;
+
+        /** The contents of the page. */
+        final byte[] data = new byte[PAGE_SIZE];
+
+        /** Specifies if the page has been modified since it was read or committed. */
+        boolean dirty;
+
+        /** The next more recently used page. */
+        Page newer;
+
+        /** The next less recently used page. */
+        Page older;
     }
 
-    public static boolean exists(String filename) {
-        return files.containsKey(filename);
+    /**
+     * An Adler-32 checksum, of the contents of a journal and of the
+     * record index that <code>RecordStore</code> saves on close.
+     */
+    static final class Checksum {
+
+        /** The sum of the bytes. */
+        private int a = 1;
+
+        /** The sum of the values of <code>a</code>. */
+        private int b;
+
+        /**
+         * Adds bytes to the checksum.
+         */
+        void update(byte[] buf, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                a = (a + (buf[i] & 0xFF)) % 65521;
+                b = (b + a) % 65521;
+            }
+        }
+
+        /**
+         * Adds the bytes of an int to the checksum.
+         */
+        void update(int v) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                a = (a + ((v >>> shift) & 0xFF)) % 65521;
+                b = (b + a) % 65521;
+            }
+        }
+
+        /**
+         * Returns the checksum.
+         */
+        int value() {
+            return (b << 16) | a;
+        }
+    }
+
+    /**
+     * Returns the name of the file that holds a record store. Characters that
+     * may not be valid in a file name or that have a meaning in a connection
+     * name are replaced by '%' followed by their code in hexadecimal.
+     *
+     * @param name  the name of the record store
+     * @return the name of its file
+     */
+    private static String fileNameFor(String name) {
+        StringBuffer buf = new StringBuffer(name.length() + FILE_SUFFIX.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_') {
+                buf.append(c);
+            } else {
+                String hex = Integer.toHexString(c);
+                buf.append('%').append("0000".substring(hex.length())).append(hex);
+            }
+        }
+        return buf.append(FILE_SUFFIX).toString();
+    }
+
+    /**
+     * Returns the name of the record store held in a file.
+     *
+     * @param fileName  the name of a file returned by {@link #fileNameFor}
+     * @return the name of the record store
+     */
+    private static String storeNameFor(String fileName) {
+        StringBuffer buf = new StringBuffer();
+        int end = fileName.length() - FILE_SUFFIX.length();
+        for (int i = 0; i < end; i++) {
+            char c = fileName.charAt(i);
+            if (c == '%' && i + 4 < end) {
+                buf.append((char)Integer.parseInt(fileName.substring(i + 1, i + 5), 16));
+                i += 4;
+            } else {
+                buf.append(c);
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Determines if a file exists in the host file system.
+     */
+    private static boolean fileExists(String fileName) {
+        try {
+            Connector.openInputStream("file://" + fileName).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Deletes a file in the host file system.
+     */
+    private static void deleteHostFile(String fileName) throws IOException {
+        DataOutputStream out = Connector.openDataOutputStream("deletefiles://");
+        out.writeUTF(fileName);
+        out.close();
+    }
+
+    /**
+     * Locks a file in the host file system. The lock is held until the returned
+     * stream is closed, or until the VM exits. The lock is taken on a separate
+     * file, which is left behind when the file is deleted as deleting it could let
+     * two VMs lock different files of the same name.
+     *
+     * @throws IOException if the file is locked by another isolate or VM
+     */
+    private static OutputStream lockHostFile(String fileName) throws IOException {
+        return Connector.openOutputStream("file://" + fileName + LOCK_SUFFIX + ";lock=true");
+    }
+
+    /**
+     * Sets the length of a file in the host file system.
+     */
+    private static void setHostFileLength(String fileName, int length, boolean sync) throws IOException {
+        Connector.openOutputStream("file://" + fileName + ";length=" + length + (sync ? ";sync=true" : "")).close();
+    }
+
+    public static boolean deleteFile(String name) {
+        String fileName = fileNameFor(name);
+        try {
+            // Fails if the record store is open in another isolate
+            OutputStream lock = lockHostFile(fileName);
+            try {
+                deleteHostFile(fileName + JOURNAL_SUFFIX);
+                deleteHostFile(fileName);
+            } finally {
+                lock.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        return !fileExists(fileName);
+    }
+
+    public static boolean exists(String name) {
+        return fileExists(fileNameFor(name));
     }
 
     public static String[] listRecordStores() {
-        String[] result = new String[files.size()];
-        Enumeration keys = files.keys();
-        for (int i=0; keys.hasMoreElements(); i++) {
-            result[i] = (String) keys.nextElement();
+        Vector names = new Vector();
+        try {
+            DataInputStream in = Connector.openDataInputStream("file://./");
+            try {
+                while (true) {
+                    String path = in.readUTF();
+                    String fileName = path.substring(path.lastIndexOf('/') + 1);
+                    if (fileName.endsWith(FILE_SUFFIX)) {
+                        names.addElement(storeNameFor(fileName));
+                    }
+                }
+            } catch (EOFException e) {
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
         }
+        if (names.isEmpty()) {
+            return null;
+        }
+        String[] result = new String[names.size()];
+        names.copyInto(result);
         return result;
     }
 
     public static int spaceAvailable() {
-        return 1000000;
+        return SPACE_AVAILABLE;
     }
 
     /**
-     * Create a new read/write RandomAccessFile.
-     * 
-     * @param name
-     * @throws IOException
+     * Opens the file of a record store for reading and writing, creating it if it does
+     * not exist. If the journal of the file is complete, the journaled pages are written
+     * to the file. The file is locked until it is closed.
+     *
+     * @param name  the name of the record store
+     * @throws IOException if the file is open in another isolate or VM, or
+     *                     cannot be opened or recovered
      */
     public RandomAccessFile(String name) throws IOException
     {
-        this(name, "rw");
-    }
-
-    /**
-     * Creates a random access file stream to read from, and optionally
-     * to write to, a file with the specified name. A new
-     * {@link FileDescriptor} object is created to represent the
-     * connection to the file.
-     * <p>
-     * The mode argument must either be equal to <code>"r"</code> or
-     * <code>"rw"</code>, indicating that the file is to be opened for
-     * input only or for both input and output, respectively. The
-     * write methods on this object will always throw an
-     * <code>IOException</code> if the file is opened with a mode of
-     * <code>"r"</code>. If the mode is <code>"rw"</code> and the
-     * file does not exist, then an attempt is made to create it.
-     * An <code>IOException</code> is thrown if the name argument
-     * refers to a directory.
-     * <p>
-     * If there is a security manager, its <code>checkRead</code> method
-     * is called with the <code>name</code> argument
-     * as its argument to see if read access to the file is allowed.
-     * If the mode is "rw", the security manager's
-     * <code>checkWrite</code> method
-     * is also called with the <code>name</code> argument
-     * as its argument to see if write access to the file is allowed.
-     *
-     * @param      name   the system-dependent filename.
-     * @param      mode   the access mode.
-     * @exception  IllegalArgumentException  if the mode argument is not equal
-     *               to <code>"r"</code> or to <code>"rw"</code>.
-     * @exception  FileNotFoundException  if the file exists but is a directory
-     *                   rather than a regular file, or cannot be opened or
-     *                   created for any other reason
-     * @exception  SecurityException         if a security manager exists and its
-     *               <code>checkRead</code> method denies read access to the file
-     *               or the mode is "rw" and the security manager's
-     *               <code>checkWrite</code> method denies write access to the file.
-     * @see        java.lang.SecurityException
-     * @see        java.lang.SecurityManager#checkRead(java.lang.String)
-     * @see        java.lang.SecurityManager#checkWrite(java.lang.String)
-     */
-    public RandomAccessFile(String name, String mode)
-    throws IOException
-    {
-    boolean rw = mode.equals("rw");
-    if (!rw && !mode.equals("r"))
-        throw new IllegalArgumentException("mode must be r or rw");
-    filePointer = -1;
-    fileSize = 0;
-    fileBytes = new byte[FILE_SIZE_INCREMENT];
+        fileName = fileNameFor(name);
+        lock = lockHostFile(fileName);
+        try {
+            if (!fileExists(fileName)) {
+                setHostFileLength(fileName, 0, false);
+            }
+            InputStream in = Connector.openInputStream("file://" + fileName);
+            try {
+                storedSize = in.available();
+            } finally {
+                in.close();
+            }
+            fileSize = storedSize;
+            if (JOURNAL) {
+                recover();
+            }
+        } catch (IOException e) {
+            lock.close();
+            lock = null;
+            throw e;
+        }
     }
 
     // 'Read' primitives
@@ -157,12 +393,12 @@ class RandomAccessFile implements DataOutput, DataInput {
      * @exception  IOException  if an I/O error occurs. Not thrown if
      *                          end-of-file has been reached.
      */
-    public /*native*/ int read() throws IOException {
+    public int read() throws IOException {
         if (filePointer >= fileSize) {
             return -1;
         }
-        filePointer++;
-        return (int) fileBytes[filePointer];
+        Page page = getPage(filePointer / PAGE_SIZE);
+        return page.data[filePointer++ % PAGE_SIZE] & 0xFF;
     }
 
     /**
@@ -172,14 +408,22 @@ class RandomAccessFile implements DataOutput, DataInput {
      * @param len the number of bytes that are written
      * @exception IOException If an I/O error has occurred.
      */
-    private /*native*/ int readBytes(byte b[], int off, int len) throws IOException {
-        int count = 0;
-        int read;
-        while ((read = read()) != -1 && len > 0) {
-            b[off] = (byte) read;
-            off++;
-            len--;
-            count++;
+    private int readBytes(byte b[], int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (filePointer >= fileSize) {
+            return -1;
+        }
+        int count = Math.min(len, fileSize - filePointer);
+        for (int left = count; left > 0; ) {
+            Page page = getPage(filePointer / PAGE_SIZE);
+            int pos = filePointer % PAGE_SIZE;
+            int n = Math.min(left, PAGE_SIZE - pos);
+            System.arraycopy(page.data, pos, b, off, n);
+            filePointer += n;
+            off += n;
+            left -= n;
         }
         return count;
     }
@@ -311,14 +555,13 @@ class RandomAccessFile implements DataOutput, DataInput {
      * @param      b   the <code>byte</code> to be written.
      * @exception  IOException  if an I/O error occurs.
      */
-    public /*native*/ void write(int b) throws IOException {
-        filePointer++;
-        if (filePointer >= fileBytes.length) {
-            byte[] bytes = new byte[fileSize + FILE_SIZE_INCREMENT];
-            System.arraycopy(fileBytes, 0, bytes, 0, fileBytes.length);
-            fileBytes = bytes;
+    public void write(int b) throws IOException {
+        Page page = getPage(filePointer / PAGE_SIZE);
+        page.data[filePointer++ % PAGE_SIZE] = (byte) b;
+        setDirty(page);
+        if (filePointer > fileSize) {
+            fileSize = filePointer;
         }
-        fileBytes[filePointer] = (byte) b;
     }
 
     /**
@@ -329,9 +572,19 @@ class RandomAccessFile implements DataOutput, DataInput {
      * @param len the number of bytes that are written
      * @exception IOException If an I/O error has occurred.
      */
-    private /*native*/ void writeBytes(byte b[], int off, int len) throws IOException {
-        for (; len > 0; len--, off++) {
-            write(b[off]);
+    private void writeBytes(byte b[], int off, int len) throws IOException {
+        while (len > 0) {
+            Page page = getPage(filePointer / PAGE_SIZE);
+            int pos = filePointer % PAGE_SIZE;
+            int n = Math.min(len, PAGE_SIZE - pos);
+            System.arraycopy(b, off, page.data, pos, n);
+            setDirty(page);
+            filePointer += n;
+            off += n;
+            len -= n;
+        }
+        if (filePointer > fileSize) {
+            fileSize = filePointer;
         }
     }
 
@@ -368,8 +621,8 @@ class RandomAccessFile implements DataOutput, DataInput {
      *             at which the next read or write occurs.
      * @exception  IOException  if an I/O error occurs.
      */
-    public /*native*/ long getFilePointer() throws IOException {
-        return filePointer + 1;
+    public long getFilePointer() throws IOException {
+        return filePointer;
     }
 
     /**
@@ -386,8 +639,11 @@ class RandomAccessFile implements DataOutput, DataInput {
      * @exception  IOException  if <code>pos</code> is less than
      *                          <code>0</code> or if an I/O error occurs.
      */
-    public /*native*/ void seek(long pos) throws IOException {
-        filePointer = ((int) pos) - 1;
+    public void seek(long pos) throws IOException {
+        if (pos < 0) {
+            throw new IOException("negative seek offset");
+        }
+        filePointer = (int) pos;
     }
 
     /**
@@ -396,7 +652,7 @@ class RandomAccessFile implements DataOutput, DataInput {
      * @return     the length of this file, measured in bytes.
      * @exception  IOException  if an I/O error occurs.
      */
-    public /*native*/ long length() throws IOException {
+    public long length() throws IOException {
         return fileSize;
     }
 
@@ -419,13 +675,24 @@ class RandomAccessFile implements DataOutput, DataInput {
      * @exception  IOException  If an I/O error occurs
      * @since      1.2
      */
-    public /*native*/ void setLength(long newLength) throws IOException {
-        fileSize = (int) newLength;
-        if (fileSize > fileBytes.length) {
-            byte[] bytes = new byte[fileSize];
-            System.arraycopy(fileBytes, 0, bytes, 0, fileBytes.length);
-            fileBytes = bytes;
+    public void setLength(long newLength) throws IOException {
+        int size = (int) newLength;
+        if (size < fileSize) {
+            // Drop the cached pages past the new end of the file
+            Page page = mru;
+            while (page != null) {
+                Page older = page.older;
+                if (page.number * PAGE_SIZE >= size) {
+                    if (page.dirty) {
+                        dirtyCount--;
+                    }
+                    unlink(page);
+                    pages.remove(page.number);
+                }
+                page = older;
+            }
         }
+        fileSize = size;
         if (filePointer > fileSize) {
             filePointer = fileSize;
         }
@@ -435,11 +702,334 @@ class RandomAccessFile implements DataOutput, DataInput {
      * Closes this random access file stream and releases any system
      * resources associated with the stream. A closed random access
      * file cannot perform input or output operations and cannot be
-     * reopened.
+     * reopened. The modifications not yet committed are committed and
+     * the lock on the file is released.
+     *
+     * @exception  IOException  if an I/O error occurs.
+     */
+    public void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            pages = null;
+            mru = lru = null;
+            if (lock != null) {
+                lock.close();
+                lock = null;
+            }
+        }
+    }
+
+    // Page cache and commit
+
+    /**
+     * Returns a page of the file, reading it into the cache if necessary,
+     * and makes it the most recently used page.
+     *
+     * @param number  the number of the page
+     * @return the page
+     */
+    private Page getPage(int number) throws IOException {
+        Page page = mru;
+        if (page != null && page.number == number) {
+            return page;
+        }
+        page = (Page)pages.get(number);
+        if (page == null) {
+            page = newPage();
+            page.number = number;
+            readPage(page);
+            pages.put(number, page);
+        } else {
+            unlink(page);
+        }
+        page.older = mru;
+        if (mru != null) {
+            mru.newer = page;
+        } else {
+            lru = page;
+        }
+        mru = page;
+        return page;
+    }
+
+    /**
+     * Returns a page that is not in the cache. When the cache is full, the least
+     * recently used page that may be evicted is removed from it and reused. When
+     * journaling, modified pages may not be evicted, so if every page is modified
+     * a new page is returned and the cache grows until the next commit.
+     *
+     * @return a page
+     */
+    private Page newPage() throws IOException {
+        if (pages.size() >= CACHE_PAGES) {
+            for (Page page = lru; page != null; page = page.newer) {
+                if (page.dirty) {
+                    if (JOURNAL) {
+                        continue; // kept until committed
+                    }
+                    writePages(new int[] { page.number }, false);
+                }
+                unlink(page);
+                pages.remove(page.number);
+                return page;
+            }
+        }
+        return new Page();
+    }
+
+    /**
+     * Removes a page from the list of cached pages.
+     */
+    private void unlink(Page page) {
+        if (page.newer != null) {
+            page.newer.older = page.older;
+        } else {
+            mru = page.older;
+        }
+        if (page.older != null) {
+            page.older.newer = page.newer;
+        } else {
+            lru = page.newer;
+        }
+        page.newer = page.older = null;
+    }
+
+    /**
+     * Marks a page as modified.
+     */
+    private void setDirty(Page page) {
+        if (!page.dirty) {
+            page.dirty = true;
+            dirtyCount++;
+        }
+    }
+
+    /**
+     * Reads the contents of a page from the host file. The part of the page
+     * past the end of the file is zeroed.
+     */
+    private void readPage(Page page) throws IOException {
+        int position = page.number * PAGE_SIZE;
+        int length = Math.min(Math.min(storedSize, fileSize) - position, PAGE_SIZE);
+        int n = 0;
+        if (length > 0) {
+            InputStream in = Connector.openInputStream("file://" + fileName + ";position=" + position);
+            try {
+                while (n < length) {
+                    int count = in.read(page.data, n, length - n);
+                    if (count < 0) {
+                        break;
+                    }
+                    n += count;
+                }
+            } finally {
+                in.close();
+            }
+        }
+        while (n < PAGE_SIZE) {
+            page.data[n++] = 0;
+        }
+        page.dirty = false;
+    }
+
+    /**
+     * Returns the number of bytes of a page that are within the file.
+     */
+    private int pageLength(int number) {
+        return Math.max(0, Math.min(PAGE_SIZE, fileSize - number * PAGE_SIZE));
+    }
+
+    /**
+     * Returns the numbers of the modified pages in ascending order.
+     */
+    private int[] getDirtyPages() {
+        int[] numbers = new int[dirtyCount];
+        int count = 0;
+        for (Page page = mru; page != null; page = page.older) {
+            if (page.dirty) {
+                numbers[count++] = page.number;
+            }
+        }
+        Arrays.sort(numbers);
+        return numbers;
+    }
+
+    /**
+     * Writes modified pages to the host file and marks them as unmodified.
+     * Each run of consecutive pages is written with a single connection.
+     *
+     * @param numbers  the numbers of the pages in ascending order
+     * @param sync     specifies if the pages are forced to the storage device
+     */
+    private void writePages(int[] numbers, boolean sync) throws IOException {
+        int i = 0;
+        while (i < numbers.length) {
+            int position = numbers[i] * PAGE_SIZE;
+            OutputStream out = Connector.openOutputStream("file://" + fileName + ";position=" + position + (sync ? ";sync=true" : ""));
+            try {
+                do {
+                    Page page = (Page)pages.get(numbers[i]);
+                    int length = pageLength(page.number);
+                    out.write(page.data, 0, length);
+                    position += length;
+                    page.dirty = false;
+                    dirtyCount--;
+                    i++;
+                } while (i < numbers.length && numbers[i] == numbers[i - 1] + 1);
+            } finally {
+                out.close();
+            }
+            if (position > storedSize) {
+                storedSize = position;
+            }
+        }
+    }
+
+    /**
+     * Writes the modified pages and the length of the file to the host file,
+     * going through the journal if journaling is enabled, then shrinks the cache
+     * back to <code>CACHE_PAGES</code> pages.
      *
      * @exception  IOException  if an I/O error occurs.
      */
-    public /*native*/ void close() throws IOException {
+    void commit() throws IOException {
+        lastCommit = System.currentTimeMillis();
+        if (dirtyCount == 0 && fileSize == storedSize) {
+            return;
+        }
+        int[] numbers = getDirtyPages();
+        if (JOURNAL) {
+            writeJournal(numbers);
+        }
+        writePages(numbers, true);
+        if (storedSize != fileSize) {
+            setHostFileLength(fileName, fileSize, true);
+            storedSize = fileSize;
+        }
+        if (JOURNAL) {
+            // Not forced to the device: replaying the last commit again is harmless
+            setHostFileLength(fileName + JOURNAL_SUFFIX, 0, false);
+        }
+
+        // Drop the least recently used pages kept past the limit while they were modified
+        while (pages.size() > CACHE_PAGES) {
+            Page page = lru;
+            unlink(page);
+            pages.remove(page.number);
+        }
+    }
+
+    /**
+     * Commits the modifications if <code>COMMIT_PAGES</code> pages have been modified
+     * or <code>COMMIT_INTERVAL</code> milliseconds have passed since the last commit.
+     * This must only be called when the file is in a consistent state.
+     *
+     * @exception  IOException  if an I/O error occurs.
+     */
+    void commitIfDue() throws IOException {
+        if (dirtyCount >= COMMIT_PAGES ||
+            (dirtyCount != 0 && System.currentTimeMillis() - lastCommit >= COMMIT_INTERVAL)) {
+            commit();
+        }
+    }
+
+    /**
+     * Writes the modified pages to the journal and forces it to the storage device.
+     * The journal is the magic word, the length of the file, the number of pages, the
+     * number, length and contents of each page and the checksum of all but the magic.
+     *
+     * @param numbers  the numbers of the modified pages
+     */
+    private void writeJournal(int[] numbers) throws IOException {
+        Checksum checksum = new Checksum();
+        DataOutputStream out = Connector.openDataOutputStream("file://" + fileName + JOURNAL_SUFFIX + ";length=0;sync=true");
+        try {
+            out.writeInt(JOURNAL_MAGIC);
+            out.writeInt(fileSize);
+            out.writeInt(numbers.length);
+            checksum.update(fileSize);
+            checksum.update(numbers.length);
+            for (int i = 0; i < numbers.length; i++) {
+                Page page = (Page)pages.get(numbers[i]);
+                int length = pageLength(page.number);
+                out.writeInt(page.number);
+                out.writeInt(length);
+                out.write(page.data, 0, length);
+                checksum.update(page.number);
+                checksum.update(length);
+                checksum.update(page.data, 0, length);
+            }
+            out.writeInt(checksum.value());
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the pages of a complete journal to the file and empties the journal.
+     * A journal that was not completely written is ignored.
+     */
+    private void recover() throws IOException {
+        String journal = fileName + JOURNAL_SUFFIX;
+        if (!fileExists(journal)) {
+            return;
+        }
+        Vector recovered = new Vector();
+        int size;
+        DataInputStream in = Connector.openDataInputStream("file://" + journal);
+        try {
+            if (in.readInt() != JOURNAL_MAGIC) {
+                throw new EOFException();
+            }
+            Checksum checksum = new Checksum();
+            size = in.readInt();
+            int count = in.readInt();
+            checksum.update(size);
+            checksum.update(count);
+            for (int i = 0; i < count; i++) {
+                Page page = new Page();
+                page.number = in.readInt();
+                int length = in.readInt();
+                if (page.number < 0 || length < 0 || length > PAGE_SIZE) {
+                    throw new EOFException();
+                }
+                in.readFully(page.data, 0, length);
+                checksum.update(page.number);
+                checksum.update(length);
+                checksum.update(page.data, 0, length);
+                recovered.addElement(page);
+            }
+            if (in.readInt() != checksum.value()) {
+                throw new EOFException();
+            }
+        } catch (EOFException e) {
+            // incomplete (or empty) journal: the file was not modified
+            in.close();
+            setHostFileLength(journal, 0, false);
+            return;
+        }
+        in.close();
+
+        fileSize = size;
+        for (int i = 0; i < recovered.size(); i++) {
+            Page page = (Page)recovered.elementAt(i);
+            pages.put(page.number, page);
+            page.older = mru;
+            if (mru != null) {
+                mru.newer = page;
+            } else {
+                lru = page;
+            }
+            mru = page;
+            setDirty(page);
+        }
+        writePages(getDirtyPages(), true);
+        if (storedSize != fileSize) {
+            setHostFileLength(fileName, fileSize, true);
+            storedSize = fileSize;
+        }
+        setHostFileLength(journal, 0, false);
     }
 
     //
@@ -106,7 +106,11 @@ public class RecordStore
     /** size of the buffer for compacting record store */
     private static final int DB_COMPACTBUFFER_SIZE = 64;
 
-    /** cache of open RecordStore instances */
+    /**
+     * cache of open RecordStore instances.  Like all static state it
+     * is per isolate; the file of an open record store is locked so
+     * that other isolates cannot open it at the same time.
+     */
     private static java.util.Vector dbCache = new java.util.Vector(3);
 
     /** lock to protect static dbcache state */
@@ -130,8 +134,11 @@ public class RecordStore
     /** cache of record headers */
     private RecordHeaderCache recHeadCache;
 
-    /** number of direct mapped cache entries */
-    private static int CACHE_SIZE = 8;
+    /** number of record headers kept in the cache */
+    private static int CACHE_SIZE = 16;
+
+    /** offsets of the live records indexed by record id */
+    private RecordIndex recIndex;
 
     /** static buffer used in loading/storing RecordHeader data */
     private static byte[] recHeadBuf = new byte[DB_RECORD_HEADER_LENGTH];
@@ -196,6 +203,21 @@ public class RecordStore
      * 40-43 - Start of Data storage
      * 44-47 - End of Data storage
      * 48-xx - Record storage
+     *
+     * A record store that was closed is followed by its record index,
+     * starting at the end of data storage:
+     *
+     * 00-03 - Index signature = 'rmsi'
+     * 04-07 - Database "version" when the index was saved
+     * 08-11 - End of Data storage when the index was saved
+     * 12-15 - Number of records in the index
+     * 16-xx - Record id and record header offset of each record
+     * xx-xx - Adler-32 checksum of the bytes above
+     *
+     * The index is only used when all of these match the database
+     * header; otherwise it is rebuilt from the linked list of records.
+     * Adding a record overwrites it, which is safe as every change to
+     * the records also changes the version.
      */
 
     /** RS_SIGNATURE offset */
@@ -219,6 +241,15 @@ public class RecordStore
     /** RS_END_OF_DATA offset */
     private static final int RS_DATA_END = 44;
 
+    /** signature of a saved record index, 'rmsi' */
+    private static final int INDEX_SIGNATURE = 0x726D7369;
+
+    /** size of the fields before the entries of a saved record index */
+    private static final int INDEX_HEADER_SIZE = 16;
+
+    /** size of the buffer used in loading/storing the record index */
+    private static final int INDEX_BUFFER_SIZE = 4096;
+
     /*
      * RecordStore Constructors
      */
@@ -256,6 +287,7 @@ public class RecordStore
     {
     this.recordStoreName = recordStoreName;
     recHeadCache = new RecordHeaderCache(CACHE_SIZE);
+    recIndex = new RecordIndex();
     rsLock = new Object();
     recordListener = new java.util.Vector(3);
 
@@ -268,13 +300,16 @@ public class RecordStore
     }
 
     // Create a RandomAccessFile for storing the record store.
+    boolean opened = false;
     try {
         randomAccessFile = new RandomAccessFile(recordStoreName);
         /*
          * At this point we've opened the RandomAccessFile.  If we
          * created a new record store, initialize the db attributes.
+         * An empty file is a record store whose creation was not
+         * committed.
          */
-        if (create && !exists) {
+        if ((create && !exists) || randomAccessFile.length() == 0) {
         // Initialize record store attributes
         randomAccessFile.seek(RS_SIGNATURE);
         // Update the timestamp
@@ -283,6 +318,7 @@ public class RecordStore
         RecordStore.putInt(48, DB_INIT, RS_DATA_START);
         RecordStore.putInt(48, DB_INIT, RS_DATA_END);
         randomAccessFile.write(DB_INIT);
+        randomAccessFile.commit();
         } else {
         /*
          * Create a buffer and read the database attributes
@@ -311,20 +347,43 @@ public class RecordStore
         dbLastModified = RecordStore.getLong(buf, RS_LAST_MODIFIED);
         dbDataStart = RecordStore.getInt(buf, RS_DATA_START);
         dbDataEnd = RecordStore.getInt(buf, RS_DATA_END);
-        }
 
+        /*
+         * Use the index saved by the last close if it is still
+         * valid, otherwise index the records by walking the
+         * linked list once.
+         */
+        if (!loadIndex()) {
+            recIndex = new RecordIndex();
+            RecordHeader rh = new RecordHeader();
+            int offset = dbFirstRecordOffset;
+            while (offset != 0) {
+            rh.load(offset);
+            if (rh.id > 0) {
+                recIndex.put(rh.id, offset);
+            }
+            offset = rh.nextOffset;
+            }
+        }
+        }
+        opened = true;
     } catch (java.io.IOException ioe) {
+        throw new RecordStoreException("error opening record store " +
+                       "file");
+    } finally {
+        /*
+         * Close the file on any failure, including an invalid
+         * signature, so that its lock is released.
+         */
+        if (!opened && randomAccessFile != null) {
         try {
-        if (randomAccessFile != null) {
             randomAccessFile.close();
-        }
         } catch (java.io.IOException ioe2) {
-        // ignore exception within exception block
+            // ignore exception within exception block
         } finally {
-        randomAccessFile = null;
+            randomAccessFile = null;
+        }
         }
-        throw new RecordStoreException("error opening record store " +
-                       "file");
     }
     }
 
@@ -471,8 +530,8 @@ public class RecordStore
     /**
      * Adds a new record to the record store. The recordId for this
      * new record is returned. This is a blocking atomic operation.
-     * The record is written to persistent storage before the
-     * method returns.
+     * The record is written to persistent storage by the next
+     * commit (see {@link #commit}).
      *
      * @param data the data to be stored in this record. If the record
      *        is to have zero-length data (no data), this parameter
@@ -524,6 +583,7 @@ public class RecordStore
         dbNumLiveRecords++;
         dbVersion++;
         storeDBState();
+        commitIfDue();
 
         // tell listeners a record has been added
         notifyRecordAddedListeners(id);
@@ -554,7 +614,7 @@ public class RecordStore
         try {
         rh = findRecord(recordId, false);
         freeRecord(rh); // calls rh.store
-        recHeadCache.invalidate(rh.id);
+        recHeadCache.invalidate(recordId);
         } catch (java.io.IOException ioe) {
         throw new RecordStoreException("error updating file after" +
                            " record deletion");
@@ -563,6 +623,7 @@ public class RecordStore
         dbNumLiveRecords--;
         dbVersion++;
         storeDBState();
+        commitIfDue();
         // tell listeners a record has been deleted
         notifyRecordDeletedListeners(recordId);
     }
@@ -614,9 +675,9 @@ public class RecordStore
             // close native fd
             if (dbFirstFreeBlockOffset != 0) {
                 compactRecords();  // compact before close
-                // truncate file to compacted size
-                randomAccessFile.truncate(dbDataEnd);
             }
+            // save the index and truncate the file after it
+            storeIndex();
             randomAccessFile.close();
             } catch (java.io.IOException ioe) {
             throw new RecordStoreException("error closing .db " +
@@ -624,12 +685,43 @@ public class RecordStore
             } finally {
             randomAccessFile = null;
             recHeadCache = null;
+            recIndex = null;
             }
         }
         }
     }
     }
 
+    /**
+     * Writes the changes made to this record store to persistent
+     * storage before returning. Changes are otherwise written in
+     * batches: when the record store is closed, and after a change
+     * once enough data has been changed or enough time has passed
+     * since the last commit.<p>
+     *
+     * A record store that was not closed (for example because the
+     * VM crashed) holds the records as of its last commit when it
+     * is next opened.<p>
+     *
+     * This method is an extension of the MIDP API.
+     *
+     * @exception RecordStoreNotOpenException if the record store is not open.
+     * @exception RecordStoreException if a different record store-related
+     *            exception occurred.
+     */
+    public void commit()
+    throws RecordStoreNotOpenException, RecordStoreException
+    {
+    synchronized (rsLock) {
+        checkOpen();
+        try {
+        randomAccessFile.commit();
+        } catch (java.io.IOException ioe) {
+        throw new RecordStoreException("error committing record store");
+        }
+    }
+    }
+
     /**
      * Returns the size (in bytes) of the MIDlet data available
      * in the given record.
@@ -829,6 +921,7 @@ public class RecordStore
         // update database header info and sync to file
         dbVersion++;
         storeDBState();
+        commitIfDue();
         notifyRecordChangedListeners(recordId);
     }
     }
@@ -1083,12 +1176,6 @@ public class RecordStore
     {
     RecordHeader rh;
 
-    int cur_offset = dbFirstRecordOffset;
-    // if no records exist, throw an exception
-    if (cur_offset == 0) {
-        throw new InvalidRecordIDException();
-    }
-
     // look for the record in the cache
     rh = recHeadCache.get(recordId);
     if (rh != null) {
@@ -1097,23 +1184,13 @@ public class RecordStore
 
     /*
      * requested record header is NOT in cache...
-     * search through the linked list of records
-     * in the file.
-     */
-    rh = new RecordHeader();
-    while (cur_offset != 0) {
-        rh.load(cur_offset);
-        if (rh.id == recordId) {
-        break;
-        } else {
-        cur_offset = rh.nextOffset;
-        }
-    }
-
-    if (cur_offset == 0) {
-        // hit the end of the linked list w/o finding record.
+     * look up its offset in the index.
+     */
+    int offset = recIndex.get(recordId);
+    if (offset == 0) {
         throw new InvalidRecordIDException();
     }
+    rh = new RecordHeader(offset);
     if (addToCache)
         recHeadCache.insert(rh);
     return rh;
@@ -1229,7 +1306,8 @@ public class RecordStore
                            "after alloc");
         }
     }
-    // add new record to cache
+    // add new record to index and cache
+    recIndex.put(id, block.offset);
     recHeadCache.insert(block);
     return block;
     }
@@ -1266,8 +1344,8 @@ public class RecordStore
                      extraSpace, 0);
         try {
         freeRecord(newfb); // write new free block to disk
-        RecordHeader prh = new RecordHeader(recHead.offset +
-                            recHead.blockSize);
+        // the block that followed recHead now follows the free block
+        RecordHeader prh = new RecordHeader(fboffset + extraSpace);
         prh.nextOffset = fboffset;
         prh.store();
         recHeadCache.invalidate(prh.id);
@@ -1298,6 +1376,9 @@ public class RecordStore
     private void freeRecord(RecordHeader rh)
     throws RecordStoreException
     {
+    if (rh.id > 0) {
+        recIndex.remove(rh.id);
+    }
     if (rh.offset == dbFirstRecordOffset) {
         // don't put free blocks at the end of the record file
         dbFirstRecordOffset = rh.nextOffset;
@@ -1396,6 +1477,109 @@ public class RecordStore
     }
     }
 
+    /**
+     * Commits the changes to the record store file if enough of them
+     * have accumulated.  Called at the end of each update, when the
+     * record store file is consistent.
+     *
+     * @exception RecordStoreException if the changes cannot be written
+     */
+    private void commitIfDue() throws RecordStoreException
+    {
+    try {
+        randomAccessFile.commitIfDue();
+    } catch (java.io.IOException ioe) {
+        throw new RecordStoreException("error committing record store");
+    }
+    }
+
+    /**
+     * Saves the record index after the last data block and truncates
+     * the record store file at the end of the index.  Called on the
+     * final close, once the records have been compacted.
+     *
+     * @exception java.io.IOException if the index cannot be written
+     */
+    private void storeIndex() throws java.io.IOException
+    {
+    RandomAccessFile.Checksum checksum = new RandomAccessFile.Checksum();
+    byte[] buf = new byte[INDEX_BUFFER_SIZE];
+    RecordStore.putInt(INDEX_SIGNATURE, buf, 0);
+    RecordStore.putInt(dbVersion, buf, 4);
+    RecordStore.putInt(dbDataEnd, buf, 8);
+    RecordStore.putInt(recIndex.count, buf, 12);
+    int n = INDEX_HEADER_SIZE;
+
+    randomAccessFile.seek(dbDataEnd);
+    int[] keys = recIndex.keys;
+    for (int i = 0; i < keys.length; i++) {
+        if (keys[i] != 0) {
+        if (n == buf.length) {
+            checksum.update(buf, 0, n);
+            randomAccessFile.write(buf, 0, n);
+            n = 0;
+        }
+        RecordStore.putInt(keys[i], buf, n);
+        RecordStore.putInt(recIndex.offsets[i], buf, n + 4);
+        n += 8;
+        }
+    }
+    checksum.update(buf, 0, n);
+    randomAccessFile.write(buf, 0, n);
+    randomAccessFile.writeInt(checksum.value());
+    randomAccessFile.truncate(dbDataEnd + INDEX_HEADER_SIZE +
+                  (recIndex.count * 8) + 4);
+    }
+
+    /**
+     * Loads the record index saved by the last close into
+     * <code>recIndex</code>.  This reads a few pages instead of the
+     * header of every record.
+     *
+     * @return true if the index was loaded, false if there is no
+     *         index or it does not match the record store, in which
+     *         case <code>recIndex</code> may hold some entries
+     *
+     * @exception java.io.IOException if the file cannot be read
+     */
+    private boolean loadIndex() throws java.io.IOException
+    {
+    int count = dbNumLiveRecords;
+    if (randomAccessFile.length() !=
+        dbDataEnd + INDEX_HEADER_SIZE + (count * 8) + 4) {
+        return false;
+    }
+
+    byte[] buf = new byte[INDEX_BUFFER_SIZE];
+    randomAccessFile.seek(dbDataEnd);
+    randomAccessFile.readFully(buf, 0, INDEX_HEADER_SIZE);
+    if (RecordStore.getInt(buf, 0) != INDEX_SIGNATURE ||
+        RecordStore.getInt(buf, 4) != dbVersion ||
+        RecordStore.getInt(buf, 8) != dbDataEnd ||
+        RecordStore.getInt(buf, 12) != count) {
+        return false;
+    }
+    RandomAccessFile.Checksum checksum = new RandomAccessFile.Checksum();
+    checksum.update(buf, 0, INDEX_HEADER_SIZE);
+    recIndex.ensureCapacity(count);
+
+    int bytesLeft = count * 8;
+    while (bytesLeft > 0) {
+        int n = Math.min(bytesLeft, buf.length);
+        randomAccessFile.readFully(buf, 0, n);
+        checksum.update(buf, 0, n);
+        for (int i = 0; i < n; i += 8) {
+        int id = RecordStore.getInt(buf, i);
+        if (id <= 0) {
+            return false;
+        }
+        recIndex.put(id, RecordStore.getInt(buf, i + 4));
+        }
+        bytesLeft -= n;
+    }
+    return randomAccessFile.readInt() == checksum.value();
+    }
+
     /*
      * Private Utility Methods
      */
@@ -1624,6 +1808,8 @@ public class RecordStore
             // Move a record back in the file
             rh.offset = target;
             rh.nextOffset = prevRec;
+            recIndex.put(rh.id, target);
+            recHeadCache.invalidate(rh.id);
             try {
             rh.store();
             offset += DB_RECORD_HEADER_LENGTH;
@@ -1849,21 +2035,21 @@ public class RecordStore
 
     /**
      * RecordHeaderCache providing a per RecordStore, in memory cache of
-     * recent  RecordHeader lookups in order to absorb in many cases the
-     * need to search for records on disk.  Since the on disk data model
-     * for record storage is a linked list, this can improve performance
-     * when a record is accessed frequently.
+     * recent RecordHeader lookups in order to absorb in many cases the
+     * need to read record headers from the file.
      *
-     * (Currently implemented in a simple, direct mapped way.  Could be
-     * modified to be random replacement/linear lookup, etc.  These design
-     * considerations should be determined by measuring cache performance
-     * on representative RMS use cases.)
+     * The cache holds the most recently used record headers, most recent
+     * first, and replaces the least recently used one when it is full.
+     * It is small enough for a linear lookup to be cheaper than hashing.
      */
     private class RecordHeaderCache {
 
-    /** a cache of RecordHeader objects */
+    /** the cached RecordHeader objects, most recently used first */
     private RecordHeader[] mCache;
 
+    /** number of entries of <code>mCache</code> in use */
+    private int mCount;
+
     /**
      * Returns a new RecordHeaderCache able to hold up to <code>
      * size</code> record headers.
@@ -1875,6 +2061,35 @@ public class RecordStore
         mCache = new RecordHeader[size];
     }
 
+    /**
+     * Returns the index in <code>mCache</code> of the RecordHeader
+     * for record <code>rec_id</code> or -1 if it is not cached.
+     *
+     * @param rec_id record id of the desired record header.
+     *
+     * @return the index of the record header.
+     */
+    private int indexOf(int rec_id) {
+        for (int i = 0; i < mCount; i++) {
+        if (mCache[i].id == rec_id) {
+            return i;
+        }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves the RecordHeader at index <code>idx</code> to the front
+     * of the cache, shifting the more recently used ones back.
+     *
+     * @param idx index of the record header to move.
+     * @param rh the record header to store at the front.
+     */
+    private void moveToFront(int idx, RecordHeader rh) {
+        System.arraycopy(mCache, 0, mCache, 1, idx);
+        mCache[0] = rh;
+    }
+
     /**
      * Returns a RecordHeader for record <code>rec_id</code> or
      * null if the desired record header is not in the cache
@@ -1885,21 +2100,30 @@ public class RecordStore
      *         <code>rec_id</code>.
      */
     RecordHeader get(int rec_id) {
-        int idx = rec_id % mCache.length;
-        RecordHeader rh = (RecordHeader)mCache[idx];
-        if ((mCache[idx] != null) && (mCache[idx].id != rec_id))
+        int idx = indexOf(rec_id);
+        if (idx < 0) {
         return null;
+        }
+        RecordHeader rh = mCache[idx];
+        moveToFront(idx, rh);
         return rh;
     }
 
     /**
-     * Inserts a new RecordHeader into the cache.
+     * Inserts a new RecordHeader into the cache, replacing any
+     * cached header for the same record.
      *
      * @param rh a RecordHeader to add to the cache.
      */
     void insert(RecordHeader rh) {
-        int idx = rh.id % mCache.length;
-        mCache[idx] = rh;
+        int idx = indexOf(rh.id);
+        if (idx < 0) {
+        if (mCount < mCache.length) {
+            mCount++;
+        }
+        idx = mCount - 1; // evicts the least recently used header
+        }
+        moveToFront(idx, rh);
     }
 
     /**
@@ -1912,10 +2136,167 @@ public class RecordStore
      */
     void invalidate(int rec_id) {
         if (rec_id > 0) {
-        int idx = rec_id % mCache.length;
-        if ((mCache[idx] != null) &&
-            (mCache[idx].id == rec_id)) {
-        mCache[idx] = null;
+        int idx = indexOf(rec_id);
+        if (idx >= 0) {
+            mCount--;
+            System.arraycopy(mCache, idx + 1, mCache, idx, mCount - idx);
+            mCache[mCount] = null;
+        }
+        }
+    }
+    }
+
+
+    /**
+     * RecordIndex maps the id of each live record to the offset of its
+     * RecordHeader in the record store file, so that a record can be
+     * found without walking the linked list of records.
+     *
+     * The index is loaded from the record store file when the record
+     * store is opened, or built from the linked list if the file holds
+     * no valid index, and is kept up to date as records are allocated, freed and
+     * moved.  It is an open addressing hash table with linear probing.
+     * A key of 0 marks an empty slot, which is safe as record ids start
+     * at 1.
+     */
+    private static class RecordIndex {
+
+    /** record ids, or 0 for an empty slot */
+    private int[] keys;
+
+    /** record header offsets of the ids in <code>keys</code> */
+    private int[] offsets;
+
+    /** number of records in the index */
+    private int count;
+
+    /**
+     * Returns a new, empty RecordIndex.
+     */
+    RecordIndex() {
+        keys = new int[64];
+        offsets = new int[64];
+    }
+
+    /**
+     * Returns the first slot to probe for record <code>rec_id</code>.
+     *
+     * @param rec_id the record id.
+     *
+     * @return the index of the slot.
+     */
+    private int slot(int rec_id) {
+        int h = rec_id * 0x9E3779B9; // scatter consecutive ids
+        return (h ^ (h >>> 16)) & (keys.length - 1);
+    }
+
+    /**
+     * Returns the offset of the header of record <code>rec_id</code>.
+     *
+     * @param rec_id the record id.
+     *
+     * @return the offset of the record header, or 0 if the record
+     *         is not in the index.
+     */
+    int get(int rec_id) {
+        int mask = keys.length - 1;
+        for (int i = slot(rec_id); keys[i] != 0; i = (i + 1) & mask) {
+        if (keys[i] == rec_id) {
+            return offsets[i];
+        }
+        }
+        return 0;
+    }
+
+    /**
+     * Records the offset of the header of record <code>rec_id</code>,
+     * replacing any offset previously recorded for it.
+     *
+     * @param rec_id the record id.
+     * @param offset the offset of the record header.
+     */
+    void put(int rec_id, int offset) {
+        if ((count + 1) * 4 > keys.length * 3) {
+        rehash(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int i = slot(rec_id);
+        while (keys[i] != 0) {
+        if (keys[i] == rec_id) {
+            offsets[i] = offset;
+            return;
+        }
+        i = (i + 1) & mask;
+        }
+        keys[i] = rec_id;
+        offsets[i] = offset;
+        count++;
+    }
+
+    /**
+     * Removes record <code>rec_id</code> from the index if it is
+     * there, otherwise does nothing.
+     *
+     * @param rec_id the record id.
+     */
+    void remove(int rec_id) {
+        int mask = keys.length - 1;
+        int i = slot(rec_id);
+        while (keys[i] != rec_id) {
+        if (keys[i] == 0) {
+            return;
+        }
+        i = (i + 1) & mask;
+        }
+        count--;
+
+        /*
+         * Close the gap by moving back any following entry of the
+         * same probe sequence whose home slot is not after the gap.
+         */
+        int gap = i;
+        for (i = (i + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+        int home = slot(keys[i]);
+        if (((i - home) & mask) >= ((i - gap) & mask)) {
+            keys[gap] = keys[i];
+            offsets[gap] = offsets[i];
+            gap = i;
+        }
+        }
+        keys[gap] = 0;
+        offsets[gap] = 0;
+    }
+
+    /**
+     * Grows the index so that it can hold <code>n</code> records
+     * without being rehashed.
+     *
+     * @param n the number of records.
+     */
+    void ensureCapacity(int n) {
+        int size = keys.length;
+        while (n * 4 > size * 3) {
+        size *= 2;
+        }
+        if (size != keys.length) {
+        rehash(size);
+        }
+    }
+
+    /**
+     * Moves the entries to tables of a new size.
+     *
+     * @param size the new table size, a power of two.
+     */
+    private void rehash(int size) {
+        int[] oldKeys = keys;
+        int[] oldOffsets = offsets;
+        keys = new int[size];
+        offsets = new int[size];
+        count = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != 0) {
+            put(oldKeys[i], oldOffsets[i]);
         }
         }
     }
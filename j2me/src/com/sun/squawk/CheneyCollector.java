@@ -1110,6 +1110,7 @@ public final class CheneyCollector extends GarbageCollector {
                     } else {
                         // The referent is unreachable
                         ref.referent = Address.zero();
+                        clearedWeakReferences++;
 
                         if (GC.GC_TRACING_SUPPORTED && tracing()) {
                             VM.println("CheneyCollector::processWeakReferenceQueue -- discarded weak reference and cleared referent");
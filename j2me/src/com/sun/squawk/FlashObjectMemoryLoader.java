@@ -68,6 +68,11 @@ private boolean isHashSet = false;
       return memoryAddress;
   }
 
+   protected boolean canStreamIntoReadOnlyMemory() {
+      // the suite is already in flash at its canonical address
+      return false;
+   }
+
    protected BitSet loadOopMap(int size) {
       //no-op: there is no oopmap in a rom-ized suite file
       return null;
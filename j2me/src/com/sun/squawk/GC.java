@@ -55,6 +55,21 @@ public class GC implements GlobalStaticFields {
      */
     private static boolean excessiveGC;
 
+    /**
+     * Specifies if thread stacks are shrunk after each full collection.
+     */
+    private static boolean shrinkStacks;
+
+    /**
+     * The number of times a thread stack has been shrunk.
+     */
+    private static int stackShrinkCount;
+
+    /**
+     * The total number of words released by shrinking thread stacks.
+     */
+    private static long stackShrinkWords;
+
     /**
      * Counter for the number of monitor exit operations.
      */
@@ -65,6 +80,13 @@ public class GC implements GlobalStaticFields {
      */
     private static int monitorReleaseCount;
 
+    /**
+     * Counter for the number of real monitors created. A monitor is only created when an
+     * object is locked by a thread that cannot use the interpreter's pending monitor cache
+     * or when a thread with pending monitors is switched out, waits or notifies.
+     */
+    private static int monitorInflationCount;
+
     /**
      * Sets the state of the excessive GC flag.
      *
@@ -72,6 +94,7 @@ public class GC implements GlobalStaticFields {
      */
     static void setExcessiveGC(boolean value) {
         excessiveGC = value;
+        updateFastAllocationEnabled();
     }
 
     /**
@@ -83,6 +106,36 @@ public class GC implements GlobalStaticFields {
         return excessiveGC;
     }
 
+    /**
+     * Enables or disables the shrinking of thread stacks after each full collection.
+     * Shrinking can only be enabled if the collector tracks the thread stacks.
+     *
+     * @param value true if oversized thread stacks should be replaced by smaller ones
+     * @return false if <code>value</code> is true but the collector does not support shrinking stacks
+     */
+    static boolean setShrinkStacks(boolean value) {
+        shrinkStacks = value && collector.tracksStackChunks();
+        return shrinkStacks == value;
+    }
+
+    /**
+     * Gets the number of times a thread stack has been shrunk.
+     *
+     * @return the number of stacks shrunk
+     */
+    static int getStackShrinkCount() {
+        return stackShrinkCount;
+    }
+
+    /**
+     * Gets the total number of words released by shrinking thread stacks.
+     *
+     * @return the number of words released
+     */
+    static long getStackShrinkWords() {
+        return stackShrinkWords;
+    }
+
     /**
      * Rounds up a 32 bit value to the next word boundry.
      *
@@ -393,6 +446,22 @@ public class GC implements GlobalStaticFields {
      */
     private static boolean allocationEnabled;
 
+    /**
+     * Flag to show that the interpreter may allocate objects directly (i.e. without calling
+     * {@link VM#_new} or {@link VM#newArray}). This caches the combined state of the
+     * allocation, excessive GC and GC tracing flags so that the interpreter's allocation
+     * fast path only needs to test a single word. It is a fixed global (see
+     * {@link com.sun.squawk.vm.Global}) for the same reason.
+     */
+    private static boolean fastAllocationEnabled;
+
+    /**
+     * Updates {@link #fastAllocationEnabled} after a change to any of the flags it depends on.
+     */
+    private static void updateFastAllocationEnabled() {
+        fastAllocationEnabled = allocationEnabled && !excessiveGC && traceFlags == 0;
+    }
+
     /**
      * Flag to show that garbage collection is enabled.
      */
@@ -552,6 +621,7 @@ public class GC implements GlobalStaticFields {
     static boolean setAllocationEnabled(boolean newState) {
         boolean oldState  = allocationEnabled;
         allocationEnabled = newState;
+        updateFastAllocationEnabled();
         return oldState;
     }
 
@@ -705,6 +775,141 @@ public class GC implements GlobalStaticFields {
         return oop;
     }
 
+    /*---------------------------------------------------------------------------*\
+     *                                Telemetry                                  *
+    \*---------------------------------------------------------------------------*/
+
+    /**
+     * The offsets of the fields in a telemetry record. Each record describes a single collection.
+     * The phase times are in the units of the collector's timer (i.e. microseconds if the
+     * <code>-usecgctimer</code> option was given, milliseconds otherwise). The fields that
+     * do not apply to the installed collector are 0.
+     */
+    public final static int TELEMETRY_SEQUENCE       = 0,   // the number of the collection since telemetry was enabled (starting at 1)
+                            TELEMETRY_KIND           = 1,   // 1 for a full collection, 0 for a partial collection
+                            TELEMETRY_START_TIME     = 2,   // the time (in milliseconds) at which the collection started
+                            TELEMETRY_PAUSE          = 3,   // the time (in milliseconds) taken by the collection
+                            TELEMETRY_BYTES_BEFORE   = 4,   // the number of heap bytes in use before the collection
+                            TELEMETRY_BYTES_AFTER    = 5,   // the number of heap bytes in use after the collection
+                            TELEMETRY_PROMOTED_BYTES = 6,   // the number of bytes promoted to the old generation
+                            TELEMETRY_STACK_CHUNKS   = 7,   // the number of stack chunks scanned
+                            TELEMETRY_MARK_TIME      = 8,   // the time spent marking
+                            TELEMETRY_COMPUTE_TIME   = 9,   // the time spent computing forwarding addresses
+                            TELEMETRY_UPDATE_TIME    = 10,  // the time spent updating pointers
+                            TELEMETRY_SLIDE_TIME     = 11,  // the time spent sliding objects
+                            TELEMETRY_RECORD_SIZE    = 12;
+
+    /**
+     * The ring buffer of telemetry records or null if telemetry is disabled.
+     */
+    private static long[] telemetry;
+
+    /**
+     * The number of telemetry records written since telemetry was enabled.
+     */
+    private static int telemetryCount;
+
+    /**
+     * Enables the recording of telemetry for each collection. The records are kept
+     * in a ring buffer so that only the most recent <code>capacity</code> records are available.
+     *
+     * @param capacity  the number of records to retain or 0 to disable telemetry
+     */
+    public static void enableTelemetry(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException();
+        }
+        telemetry = (capacity == 0 ? null : new long[capacity * TELEMETRY_RECORD_SIZE]);
+        telemetryCount = 0;
+    }
+
+    /**
+     * Gets the number of telemetry records written since telemetry was enabled. This is also
+     * the sequence number of the most recent record.
+     *
+     * @return the number of telemetry records written
+     */
+    public static int getTelemetryCount() {
+        return telemetryCount;
+    }
+
+    /**
+     * Copies a telemetry record into a given array.
+     *
+     * @param sequence  the sequence number of the record
+     * @param record    the array of at least {@link #TELEMETRY_RECORD_SIZE} elements into which the record is copied
+     * @return false if the requested record has not been written yet or has been overwritten
+     */
+    public static boolean getTelemetryRecord(int sequence, long[] record) {
+        long[] buffer = telemetry;
+        if (buffer == null || sequence < 1 || sequence > telemetryCount) {
+            return false;
+        }
+        int capacity = buffer.length / TELEMETRY_RECORD_SIZE;
+        if (telemetryCount - sequence >= capacity) {
+            return false;
+        }
+        System.arraycopy(buffer, ((sequence - 1) % capacity) * TELEMETRY_RECORD_SIZE, record, 0, TELEMETRY_RECORD_SIZE);
+        return true;
+    }
+
+    /**
+     * Writes the telemetry record for the collection just performed.
+     *
+     * @param fullCollection  true if the collection was a full collection
+     * @param startTime       the time at which the collection started
+     * @param freeBefore      the free memory before the collection
+     */
+    private static void recordTelemetry(boolean fullCollection, long startTime, long freeBefore) {
+        long[] buffer = telemetry;
+        int capacity = buffer.length / TELEMETRY_RECORD_SIZE;
+        int offset = (telemetryCount % capacity) * TELEMETRY_RECORD_SIZE;
+        for (int i = 0; i != TELEMETRY_RECORD_SIZE; ++i) {
+            buffer[offset + i] = 0;
+        }
+        long total = totalMemory();
+        buffer[offset + TELEMETRY_SEQUENCE] = telemetryCount + 1;
+        buffer[offset + TELEMETRY_KIND] = fullCollection ? 1 : 0;
+        buffer[offset + TELEMETRY_START_TIME] = startTime;
+        buffer[offset + TELEMETRY_PAUSE] = collector.getLastCollectionTime();
+        buffer[offset + TELEMETRY_BYTES_BEFORE] = total - freeBefore;
+        buffer[offset + TELEMETRY_BYTES_AFTER] = total - freeMemory();
+        collector.recordTelemetry(buffer, offset);
+        telemetryCount++;
+    }
+
+/*if[IDLEGC]*/
+    /**
+     * Specifies if the last collection was performed by {@link #collectGarbageIfIdle}.
+     */
+    private static boolean lastCollectionWasIdle;
+
+    /**
+     * Performs a full collection ahead of time if the collector determines that one is
+     * likely to be needed soon. This is called by a thread that is about to block when
+     * no other thread is runnable so that the pause does not occur while an application
+     * thread is running.
+     * No collection is performed if the last collection was itself performed this way
+     * as a collection in the idle time would only reclaim what the last one did not.
+     *
+     * @param idleTime  the time (in milliseconds) until the next thread is due to run
+     * @return true if a collection was performed
+     */
+    static boolean collectGarbageIfIdle(long idleTime) {
+        if (lastCollectionWasIdle || !collector.shouldCollectWhenIdle(allocTop, idleTime)) {
+            return false;
+        }
+        if (isTracing(TRACE_BASIC)) {
+            VM.print("** Collecting garbage while idle ** (idle time: ");
+            VM.print(idleTime);
+            VM.println("ms)");
+        }
+        VM.collectGarbage(true);
+        lastCollectionWasIdle = true;
+        return true;
+    }
+/*end[IDLEGC]*/
+
     /**
      * Collect the garbage.
      *
@@ -714,6 +919,7 @@ public class GC implements GlobalStaticFields {
 
         // Trace.
         long free = freeMemory();
+        long startTime = VM.getTimeMillis();
         if (isTracing(TRACE_BASIC)) {
             VM.print("** Collecting garbage ** (collection count: ");
             VM.print(getCollectionCount());
@@ -752,6 +958,11 @@ public class GC implements GlobalStaticFields {
         // Enable allocation again.
         setAllocationEnabled(true);
 
+        // Give back the stack space that threads no longer use now that the dead stack chunks are gone.
+        if (fullCollection && shrinkStacks) {
+            shrinkStacks();
+        }
+
         if (isTracing(TRACE_BASIC)) {
             long afterFree = freeMemory();
             VM.print("** ");
@@ -773,6 +984,16 @@ public class GC implements GlobalStaticFields {
             VM.println("ms)");
         }
 
+/*if[IDLEGC]*/
+        // Only the caller of collectGarbageIfIdle knows that this was an idle time collection
+        lastCollectionWasIdle = false;
+/*end[IDLEGC]*/
+
+        // Record the telemetry for the collection
+        if (telemetry != null) {
+            recordTelemetry(fullCollection, startTime, free);
+        }
+
         // Update the relevant collection counter
         if (fullCollection) {
             fullCollectionCount++;
@@ -1033,7 +1254,36 @@ public class GC implements GlobalStaticFields {
     }
 
     /**
-     * Copy the contents of a stack to a new stack.
+     * Replaces each thread stack that is much larger than its current depth with a smaller one.
+     * This must be called on the service thread (so that every other thread is suspended) and
+     * only after allocation has been enabled again.
+     */
+    private static void shrinkStacks() {
+        Object chunk = collector.getStackChunks();
+        while (chunk != null) {
+            // Get the next chunk first as shrinking the stack deregisters this chunk
+            Object next = NativeUnsafe.getObject(chunk, SC.next);
+            VMThread owner = (VMThread)NativeUnsafe.getObject(chunk, SC.owner);
+            if (owner != null && owner.getStack() == chunk) {
+                int released = owner.shrinkStack();
+                if (released != 0) {
+                    stackShrinkCount++;
+                    stackShrinkWords += released;
+                    if (isTracing(TRACE_BASIC)) {
+                        VM.print("GC::shrinkStacks - released ");
+                        VM.print(released);
+                        VM.print(" words from the stack of thread ");
+                        VM.println(owner.getThreadNumber());
+                    }
+                }
+            }
+            chunk = next;
+        }
+    }
+
+    /**
+     * Copy the contents of a stack to a new stack. The new stack may be smaller than
+     * the old one (when shrinking) as long as the used part of the old stack fits in it.
      *
      * @param srcChunk   the old stack
      * @param dstChunk   the new stack
@@ -1404,6 +1654,7 @@ public class GC implements GlobalStaticFields {
             if (monitor == null) {
                 monitor = new Monitor();
                 assn.setMonitor(monitor);
+                monitorInflationCount++;
             }
             return monitor;
         } else {
@@ -1416,6 +1667,7 @@ public class GC implements GlobalStaticFields {
             if (monitor == null) {
                 monitor = new Monitor();
                 monitorTable.put(object, monitor);
+                monitorInflationCount++;
             }
             return monitor;
         }
@@ -1544,6 +1796,16 @@ public class GC implements GlobalStaticFields {
         return fullCollectionCount + partialCollectionCount;
     }
 
+    /**
+     * Returns the number of weak references whose referents have been cleared by the collector.
+     * A table of weak references only needs to look for cleared entries when this value changes.
+     *
+     * @return the count of weak references cleared by the collector
+     */
+    public static int getClearedWeakReferenceCount() {
+        return collector.clearedWeakReferences;
+    }
+
     /**
      * Create class state object. This method is used for boot strapping
      * com.sun.squawk.Klass.
@@ -1702,46 +1964,101 @@ public class GC implements GlobalStaticFields {
     \*---------------------------------------------------------------------------*/
 
     /**
-     * Finds all the instances of String in the read only memory that the
-     * current isolate is bound against and adds them to a given hash table.
-     *
-     * @param   strings  the table to which the strings are to be added
+     * The tables of the strings in each of the {@link #readOnlyObjectMemories}. The table
+     * at index <code>i</code> is built on demand for the object memory at the same index.
+     * Like {@link #readOnlyObjectMemories}, these tables are not owned by any isolate: they are
+     * shared by all the isolates bound against the same read-only object memories.
      */
-    static void getStrings(SquawkHashtable strings) {
-
-        Isolate isolate = VM.getCurrentIsolate();
+    private static SquawkHashtable[] readOnlyStringTables;
 
-        Suite suite = isolate.getLeafSuite();
-        ObjectMemory parent = null;
-        while (parent == null) {
+    /**
+     * Gets the tables of the strings in the read-only object memories that a suite is bound against.
+     * The tables are ordered from the root (i.e. bootstrap) object memory to the leaf so that
+     * the first table containing a given string gives the instance closest to the root.
+     *
+     * @param leafSuite   the suite to search from
+     * @return the string tables for <code>leafSuite</code> and its parents
+     */
+    static SquawkHashtable[] getReadOnlyStringTables(Suite leafSuite) {
+        Suite suite = leafSuite;
+        ObjectMemory om = null;
+        while (om == null) {
             Assert.that(suite != null);
-            parent = suite.getReadOnlyObjectMemory();
+            om = suite.getReadOnlyObjectMemory();
             suite = suite.getParent();
         }
 
+        int count = 0;
+        for (ObjectMemory parent = om; parent != null; parent = parent.getParent()) {
+            count++;
+        }
+        SquawkHashtable[] tables = new SquawkHashtable[count];
+        while (om != null) {
+            tables[--count] = getReadOnlyStrings(om);
+            om = om.getParent();
+        }
+        return tables;
+    }
+
+    /**
+     * Gets the table of the strings in a registered read-only object memory, building it if necessary.
+     *
+     * @param om   a registered read-only object memory
+     * @return the strings in <code>om</code>
+     */
+    private static SquawkHashtable getReadOnlyStrings(ObjectMemory om) {
+        ObjectMemory[] memories = readOnlyObjectMemories;
+        SquawkHashtable[] tables = readOnlyStringTables;
+        if (tables == null || tables.length != memories.length) {
+            // Object memories are only ever appended to readOnlyObjectMemories
+            SquawkHashtable[] arr = new SquawkHashtable[memories.length];
+            if (tables != null) {
+                System.arraycopy(tables, 0, arr, 0, tables.length);
+            }
+            tables = readOnlyStringTables = arr;
+        }
+        for (int i = 0; i != memories.length; ++i) {
+            if (memories[i] == om) {
+                if (tables[i] == null) {
+                    SquawkHashtable strings = new SquawkHashtable();
+                    getStrings(om, strings);
+                    tables[i] = strings;
+                }
+                return tables[i];
+            }
+        }
+        Assert.shouldNotReachHere("unregistered read-only object memory");
+        return null;
+    }
+
+    /**
+     * Finds all the instances of String in a read-only object memory and adds them to a given hash table.
+     *
+     * @param   om       the object memory to search
+     * @param   strings  the table to which the strings are to be added
+     */
+    private static void getStrings(ObjectMemory om, SquawkHashtable strings) {
         int percent = 0;
         if (VM.isVeryVerbose()) {
-            VM.print("Building String intern table from read-only memory");
+            VM.print("Building String intern table from read-only memory ");
+            VM.print(om.getURI());
         }
-        while (parent != null) {
-            Address end = parent.getStart().add(parent.getSize());
-            for (Address block = parent.getStart(); block.lo(end); ) {
-                Address object = GC.blockToOop(block);
-                if (object.toObject() instanceof String) {
-                    strings.put(object.toObject(), object.toObject());
-                }
-                if (VM.isVeryVerbose()) {
-                    Address start = parent.getStart();
-                    Offset size = end.diff(start);
-                    int percentNow = (int)((block.diff(start).toPrimitive() * 100) / size.toPrimitive());
-                    if (percentNow != percent) {
-                        VM.print('.');
-                        percent = percentNow;
-                    }
+        Address start = om.getStart();
+        Address end = start.add(om.getSize());
+        for (Address block = start; block.lo(end); ) {
+            Address object = GC.blockToOop(block);
+            if (object.toObject() instanceof String) {
+                strings.put(object.toObject(), object.toObject());
+            }
+            if (VM.isVeryVerbose()) {
+                Offset size = end.diff(start);
+                int percentNow = (int)((block.diff(start).toPrimitive() * 100) / size.toPrimitive());
+                if (percentNow != percent) {
+                    VM.print('.');
+                    percent = percentNow;
                 }
-                block = object.add(GC.getBodySize(GC.getKlass(object), object));
             }
-            parent = parent.getParent();
+            block = object.add(GC.getBodySize(GC.getKlass(object), object));
         }
         if (VM.isVeryVerbose()) {
             VM.println(" done");
@@ -53,6 +53,11 @@ public abstract class GarbageCollector implements GlobalStaticFields {
             result = collectGarbageInC(allocTop, forceFullGC);
         }
         lastCollectionTime = VM.getTimeMillis() - start;
+/*if[IDLEGC]*/
+        if (result) {
+            lastFullCollectionTime = lastCollectionTime;
+        }
+/*end[IDLEGC]*/
         return result;
     }
 
@@ -61,6 +66,14 @@ public abstract class GarbageCollector implements GlobalStaticFields {
      */
     private long lastCollectionTime;
 
+/*if[IDLEGC]*/
+    /**
+     * The time taken by the last call to {@link #collectGarbage} that collected the full heap
+     * or -1 if there has not been one yet.
+     */
+    private long lastFullCollectionTime = -1;
+/*end[IDLEGC]*/
+
     /**
      * Gets the time taken by the last call to {@link #collectGarbage}.
      */
@@ -126,6 +139,17 @@ public abstract class GarbageCollector implements GlobalStaticFields {
      */
     abstract void dumpTimings(java.io.PrintStream out);
 
+    /**
+     * Fills in the collector specific fields of a {@link GC#enableTelemetry telemetry record}
+     * describing the collection just performed. These are the promoted bytes, the number of stack
+     * chunks scanned and the phase times. The default implementation leaves them as 0.
+     *
+     * @param record  the telemetry buffer
+     * @param offset  the offset of the record in <code>record</code>
+     */
+    void recordTelemetry(long[] record, int offset) {
+    }
+
     /**
      * Returns the amount of free memory in the system. Calling the <code>gc</code>
      * method may result in increasing the value returned by <code>freeMemory.</code>
@@ -149,6 +173,55 @@ public abstract class GarbageCollector implements GlobalStaticFields {
      */
     abstract long totalMemory();
 
+/*if[IDLEGC]*/
+    /**
+     * The percent of the heap below which free memory must fall before the scheduler
+     * will use idle time to perform a collection.
+     */
+    private final static int IDLE_COLLECTION_FREE_PERCENT = 25;
+
+    /**
+     * The minimum time (in milliseconds) that all threads must be blocked before the
+     * scheduler will use the idle time to perform a collection, or 0 if collections
+     * are never performed when idle.
+     */
+    private int idleCollectionThreshold;
+
+    /**
+     * Determines if a collection should be performed now because all threads are blocked
+     * and a collection is likely to be needed soon anyway. This moves the pause of a full
+     * collection out of the execution of application threads and into time that would
+     * otherwise be spent waiting.
+     * <p>
+     * A collection cannot be interrupted once started, so one is only performed if the
+     * last full collection took less time than the idle time. No collection is performed
+     * before the first full collection has been measured.
+     *
+     * @param allocTop  the current top of the allocation space
+     * @param idleTime  the time (in milliseconds) until the next thread is due to run
+     * @return true if a full collection should be performed now
+     */
+    final boolean shouldCollectWhenIdle(Address allocTop, long idleTime) {
+        return idleCollectionThreshold != 0 &&
+               idleTime >= idleCollectionThreshold &&
+               lastFullCollectionTime >= 0 &&
+               lastFullCollectionTime < idleTime &&
+               isCollectionImminent(allocTop);
+    }
+
+    /**
+     * Determines if a full collection is likely to be required soon. The default
+     * implementation returns true if less than {@link #IDLE_COLLECTION_FREE_PERCENT}
+     * of the heap is free.
+     *
+     * @param allocTop  the current top of the allocation space
+     * @return true if a full collection is likely to be required soon
+     */
+    boolean isCollectionImminent(Address allocTop) {
+        return freeMemory(allocTop) < (totalMemory() / 100) * IDLE_COLLECTION_FREE_PERCENT;
+    }
+/*end[IDLEGC]*/
+
     /**
      * Specifies if the native version of the collectGarbage and copyObjectGraph methods
      * should be used.
@@ -174,6 +247,15 @@ public abstract class GarbageCollector implements GlobalStaticFields {
         return useMicrosecondTimer ? "usec" : "ms";
     }
 
+    /**
+     * Gets the number of timer units in a millisecond.
+     *
+     * @return 1000 if the microsecond timer is being used, 1 otherwise
+     */
+    final int timerUnitsPerMillisecond() {
+        return useMicrosecondTimer ? 1000 : 1;
+    }
+
     /**
      * Process a given command line option that may be specific to the collector implementation.
      *
@@ -194,6 +276,19 @@ public abstract class GarbageCollector implements GlobalStaticFields {
         } else if (arg.equals("-usecgctimer")) {
             useMicrosecondTimer = true;
             return true;
+        } else if (arg.startsWith("-gctelemetry:")) {
+            GC.enableTelemetry(Integer.parseInt(arg.substring("-gctelemetry:".length())));
+            return true;
+/*if[IDLEGC]*/
+        } else if (arg.startsWith("-idlegc:")) {
+            int threshold = Integer.parseInt(arg.substring("-idlegc:".length()));
+            if (threshold <= 0) {
+                System.err.println("Warning: idle collection threshold invalid");
+            } else {
+                idleCollectionThreshold = threshold;
+            }
+            return true;
+/*end[IDLEGC]*/
         }
         return false;
     }
@@ -209,6 +304,10 @@ public abstract class GarbageCollector implements GlobalStaticFields {
             out.println("    -interpgc               use interpreted version of collector");
         }
         out.println("    -usecgctimer            use microsecond (not millisecond) timer for GC");
+        out.println("    -gctelemetry:<n>        record the last <n> collections in the GC telemetry buffer");
+/*if[IDLEGC]*/
+        out.println("    -idlegc:<n>             collect ahead of time when all threads are blocked for >= <n> ms");
+/*end[IDLEGC]*/
     }
 
     /*---------------------------------------------------------------------------*\
@@ -231,6 +330,27 @@ public abstract class GarbageCollector implements GlobalStaticFields {
      */
     void deregisterStackChunk(Object chunk) {}
 
+    /**
+     * Gets the list (linked through the {@link SC#next} slot) of the stack chunks that
+     * are known to this collector. This is used to find the thread stacks that can
+     * be shrunk after a full collection.
+     *
+     * @return the first stack chunk in the list or null if this collector does not track stack chunks
+     */
+    Object getStackChunks() {
+        return null;
+    }
+
+    /**
+     * Determines if this collector tracks the stack chunks so that {@link #getStackChunks}
+     * can be used to find the thread stacks to be shrunk.
+     *
+     * @return true if this collector overrides {@link #getStackChunks}
+     */
+    boolean tracksStackChunks() {
+        return false;
+    }
+
     /*---------------------------------------------------------------------------*\
      *                             Weak references                               *
     \*---------------------------------------------------------------------------*/
@@ -240,6 +360,13 @@ public abstract class GarbageCollector implements GlobalStaticFields {
      */
     protected Ref references;
 
+    /**
+     * The number of weak references whose referent has been cleared by a collection.
+     * Tables of weak references can compare this with a previous value to know if
+     * they may have stale entries.
+     */
+    protected int clearedWeakReferences;
+
     /**
      * Adds a weak reference to the list of weak references.
      *
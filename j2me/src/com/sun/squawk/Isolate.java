@@ -166,10 +166,17 @@ public final class Isolate implements Runnable {
     private Object classStateQueue;
 
     /**
-     * The interned strings for the isolate.
+     * The interned strings for the isolate that are not in the read-only object memories
+     * the isolate is bound against.
      */
     private SquawkHashtable internedStrings;
 
+    /**
+     * The tables of the strings in the read-only object memories the isolate is bound against.
+     * These tables are shared with all other isolates bound against the same object memories.
+     */
+    private SquawkHashtable[] readOnlyStrings;
+
     /**
      * List of threads ready to run after return from hibernated state.
      */
@@ -628,7 +635,10 @@ public final class Isolate implements Runnable {
      * Returns a canonical representation for the string object.
      * <p>
      * A pool of strings, initially empty, is maintained privately by the
-     * class <code>Isolate</code>.
+     * class <code>Isolate</code>. The strings in the read-only object memories
+     * the isolate is bound against are implicitly part of the pool. They are
+     * looked up in tables that are built once and shared by all isolates
+     * bound against the same object memories.
      * <p>
      * When the intern method is invoked, if the pool already contains a
      * string equal to this <code>String</code> object as determined by
@@ -649,18 +659,24 @@ public final class Isolate implements Runnable {
      *          guaranteed to be from a pool of unique strings.
      */
     public String intern(String value) {
+        if (!VM.isHosted()) {
+            if (readOnlyStrings == null) {
+                readOnlyStrings = GC.getReadOnlyStringTables(getLeafSuite());
+            }
+            for (int i = 0; i != readOnlyStrings.length; ++i) {
+                String internedString = (String)readOnlyStrings[i].get(value);
+                if (internedString != null) {
+                    return internedString;
+                }
+            }
+        }
         if (internedStrings == null) {
             internedStrings = new SquawkHashtable();
-            if (!VM.isHosted()) {
-                GC.getStrings(internedStrings);
-            }
         }
         String internedString = (String)internedStrings.get(value);
         if (internedString == null) {
-            if (internedString == null) {
-                internedStrings.put(value, value);
-                internedString = value;
-            }
+            internedStrings.put(value, value);
+            internedString = value;
         }
         return internedString;
     }
@@ -1021,8 +1037,10 @@ public final class Isolate implements Runnable {
             throw new IllegalStateException("cannot save unhibernated isolate");
         }
 
-        // Null out the interned string cache as it will be rebuilt on demand
+        // Null out the interned string cache as it will be rebuilt on demand. The read-only
+        // string tables are shared with other isolates and so must not be copied.
         internedStrings = null;
+        readOnlyStrings = null;
 
         Assert.always(savedStackChunks == null);
         ObjectMemorySerializer.ControlBlock cb;
@@ -156,6 +156,9 @@ public class JavaApplicationManager {
             if (GC.getFullCollectionCount() > 0) {
                 System.out.println(""+GC.getFullCollectionCount()+" full collections");
             }
+            if (GC.getStackShrinkCount() > 0) {
+                System.out.println(""+GC.getStackShrinkCount()+" thread stacks shrunk releasing "+GC.getStackShrinkWords()+" words");
+            }
             GC.getCollector().dumpTimings(System.out);
             System.out.println("Execution time was "+(endTime-startTime)+" ms");
             System.out.println("=============================");
@@ -273,6 +276,10 @@ public class JavaApplicationManager {
             GC.setExcessiveGC(true);
         } else if (arg.equals("-nogc")) {
             VM.allowUserGC(false);
+        } else if (arg.equals("-shrinkstacks")) {
+            if (!GC.setShrinkStacks(true)) {
+                System.err.println("Warning: -shrinkstacks is only supported by the generational collector and is ignored");
+            }
         } else if (arg.equals("-imageclasses")) {
             showImageContents(System.err, false);
             VM.stopVM(0);
@@ -400,6 +407,8 @@ public class JavaApplicationManager {
         GC.getCollector().usage(out);
         out.println("    -egc                    enable excessive garbage collection");
         out.println("    -nogc                   disable application calls to Runtime.gc()");
+        out.println("    -shrinkstacks           shrink oversized thread stacks after each full collection");
+        out.println("                            (only supported by the generational collector)");
         out.println("    -stats                  display execution statistics before exiting");
         out.println("    -D<name>=<value>        set a system property");
         out.println("    -h                      display this help message");
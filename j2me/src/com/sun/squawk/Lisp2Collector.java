@@ -517,6 +517,17 @@ public final class Lisp2Collector extends GarbageCollector {
         out.println(label + value + timerUnitSuffix() + " [" + asPercentOf(value, total) + "%]");
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    void recordTelemetry(long[] record, int offset) {
+        record[offset + GC.TELEMETRY_STACK_CHUNKS] = stackChunksScanned;
+        record[offset + GC.TELEMETRY_MARK_TIME] = collectionTimings.mark - markTimeAtStart;
+        record[offset + GC.TELEMETRY_COMPUTE_TIME] = collectionTimings.computeAddresses - computeAddressesTimeAtStart;
+        record[offset + GC.TELEMETRY_UPDATE_TIME] = collectionTimings.updatePointers - updatePointersTimeAtStart;
+        record[offset + GC.TELEMETRY_SLIDE_TIME] = collectionTimings.compactObjects - compactObjectsTimeAtStart;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -559,6 +570,19 @@ public final class Lisp2Collector extends GarbageCollector {
      */
     private final Timings collectionTimings;
 
+    /**
+     * The cumulative phase times at the start of the current (or last) collection.
+     */
+    private long markTimeAtStart;
+    private long computeAddressesTimeAtStart;
+    private long updatePointersTimeAtStart;
+    private long compactObjectsTimeAtStart;
+
+    /**
+     * The number of stack chunks scanned during the marking phase of the last collection.
+     */
+    private int stackChunksScanned;
+
     /**
      * @vm2c root( collectGarbage )
      */
@@ -566,6 +590,13 @@ public final class Lisp2Collector extends GarbageCollector {
 
         long start = now();
 
+        // Record the state of the per collection statistics.
+        markTimeAtStart = collectionTimings.mark;
+        computeAddressesTimeAtStart = collectionTimings.computeAddresses;
+        updatePointersTimeAtStart = collectionTimings.updatePointers;
+        compactObjectsTimeAtStart = collectionTimings.compactObjects;
+        stackChunksScanned = 0;
+
         // Set up the limits of the space to be collected.
         collectionStart = heapStart;
         collectionEnd = allocTop;
@@ -1194,6 +1225,10 @@ public final class Lisp2Collector extends GarbageCollector {
     private void traverseOopsInStackChunk(Address chunk, int visitor, boolean header) {
         Address fp = NativeUnsafe.getAddress(chunk, SC.lastFP);
 
+        if (visitor == MARK_VISITOR) {
+            stackChunksScanned++;
+        }
+
         // Trace.
         if (GC.GC_TRACING_SUPPORTED && tracing()) {
             VM.println();
@@ -1528,6 +1563,9 @@ public final class Lisp2Collector extends GarbageCollector {
             // Clear the referent to denote to postProcessWeakReferences() that the
             // Ref object should be reomved from the global list of Ref objects
             if (!keep) {
+                if (!referent.isZero()) {
+                    clearedWeakReferences++;
+                }
                 ref.referent = Address.zero();
             }
 
@@ -80,6 +80,31 @@ public final class Lisp2GenerationalCollector extends GarbageCollector {
      */
     private final static int DEFAULT_YOUNG_GENERATION_PERCENT = 20;
 
+    /**
+     * The bounds on the size of the young generation (as a percent of the heap size)
+     * when it is being adapted to meet a pause time goal.
+     */
+    private final static int MIN_ADAPTIVE_YOUNG_GENERATION_PERCENT = 5;
+    private final static int MAX_ADAPTIVE_YOUNG_GENERATION_PERCENT = 80;
+
+    /**
+     * The amount (as a percent of the heap size) by which the young generation is grown or
+     * shrunk when it is being adapted to meet a pause time goal.
+     */
+    private final static int YOUNG_GENERATION_STEP_PERCENT = 5;
+
+    /**
+     * If the percent of the young generation surviving a partial collection is below this
+     * value and the pause was well inside the goal, then the young generation is grown.
+     */
+    private final static int LOW_SURVIVAL_PERCENT = 10;
+
+    /**
+     * If the percent of the young generation surviving a partial collection is above this
+     * value, then the young generation is shrunk as growing it will only increase pause times.
+     */
+    private final static int HIGH_SURVIVAL_PERCENT = 50;
+
     /**
      * The marking stack.
      */
@@ -179,6 +204,11 @@ public final class Lisp2GenerationalCollector extends GarbageCollector {
         public static final int UNFORWARD = 8;
 
         final long[] times = new long[9];
+
+        /**
+         * The times for each phase of the current (or last) collection.
+         */
+        final long[] lastTimes = new long[9];
         long max = 0;
         long min = Long.MAX_VALUE;
 
@@ -213,10 +243,17 @@ public final class Lisp2GenerationalCollector extends GarbageCollector {
         long finish(int phase) {
             long now = gc.now();
             times[phase] += (now - start);
+            lastTimes[phase] += (now - start);
             start = 0;
             return now;
         }
 
+        void resetLastTimes() {
+            for (int i = 0; i != lastTimes.length; ++i) {
+                lastTimes[i] = 0;
+            }
+        }
+
         void updateMaxMin(long t) {
             if (min > t) min = t;
             if (max < t) max = t;
@@ -358,6 +395,38 @@ public final class Lisp2GenerationalCollector extends GarbageCollector {
      */
     private int idealYoungGenerationSizePercent;
 
+    /**
+     * The pause time goal (in milliseconds) for partial collections. If this is non-zero, the ideal
+     * size of the young generation is adapted after each partial collection based on its pause time
+     * and the percent of the young generation that survived.
+     */
+    private int pauseTimeGoal;
+
+    /**
+     * The percent of the young generation that survived the last partial collection.
+     */
+    private int lastSurvivalPercent;
+
+    /**
+     * The total number of bytes promoted to the old generation by partial collections.
+     */
+    private long promotedBytes;
+
+    /**
+     * The number of times the ideal size of the young generation has been adapted.
+     */
+    private int youngGenerationResizes;
+
+    /**
+     * The number of bytes promoted to the old generation by the last collection.
+     */
+    private int lastPromotedBytes;
+
+    /**
+     * The number of stack chunks scanned during the marking phase of the last collection.
+     */
+    private int stackChunksScanned;
+
     /**
      * The maximum number of times that {@link #markObject(Address)} may be called recursively.
      */
@@ -623,6 +692,14 @@ public final class Lisp2GenerationalCollector extends GarbageCollector {
                 idealYoungGenerationSizePercent = percent;
             }
             return true;
+        } else if (arg.startsWith("-pausegoal:")) {
+            int goal = Integer.parseInt(arg.substring("-pausegoal:".length()));
+            if (goal <= 0) {
+                System.err.println("Warning: pause time goal invalid");
+            } else {
+                pauseTimeGoal = goal;
+            }
+            return true;
         } else {
             return super.processCommandLineOption(arg);
         }
@@ -635,6 +712,7 @@ public final class Lisp2GenerationalCollector extends GarbageCollector {
      */
     void usage(java.io.PrintStream out) {
         out.println("    -young:<n>              young space size as % of heap (default="+DEFAULT_YOUNG_GENERATION_PERCENT+"%)");
+        out.println("    -pausegoal:<n>          adapt young space size to a partial collection pause goal of <n> ms");
         super.usage(out);
     }
 
@@ -652,6 +730,18 @@ public final class Lisp2GenerationalCollector extends GarbageCollector {
         return heapSize;
     }
 
+/*if[IDLEGC]*/
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A full collection is imminent if one has already been scheduled or if the space
+     * left above the old generation is less than twice the ideal young generation size.
+     */
+    boolean isCollectionImminent(Address allocTop) {
+        return nextCollectionIsFull || heapEnd.diff(youngGenerationStart).toInt() < getIdealYoungGenerationSize() * 2;
+    }
+/*end[IDLEGC]*/
+
     /**
      * Gets the actual size (in bytes) of the young generation based on the current start address
      * of the young generation, the ideal young generation size and the remaining
@@ -696,6 +786,47 @@ public final class Lisp2GenerationalCollector extends GarbageCollector {
         return GC.roundDown((heapSize / 100) * idealYoungGenerationSizePercent, HDR.BYTES_PER_WORD);
     }
 
+    /**
+     * Adapts the ideal size of the young generation after a partial collection. The young generation
+     * is shrunk if the collection exceeded the pause time goal or if most of the young generation
+     * survived. It is grown if little of the young generation survived and the pause was
+     * comfortably within the goal, reducing the frequency of partial collections.
+     *
+     * @param pause  the time (in timer units) taken by the partial collection so far
+     */
+    private void adaptYoungGenerationSize(long pause) {
+        long goal = (long)pauseTimeGoal * timerUnitsPerMillisecond();
+        int percent = idealYoungGenerationSizePercent;
+        if (pause > goal) {
+            // Shrink in proportion to how much the goal was exceeded
+            int target = (int)((percent * goal) / pause);
+            if (target > percent - YOUNG_GENERATION_STEP_PERCENT) {
+                target = percent - YOUNG_GENERATION_STEP_PERCENT;
+            }
+            percent = target;
+        } else if (lastSurvivalPercent > HIGH_SURVIVAL_PERCENT) {
+            percent -= YOUNG_GENERATION_STEP_PERCENT;
+        } else if (lastSurvivalPercent < LOW_SURVIVAL_PERCENT && pause * 2 < goal) {
+            percent += YOUNG_GENERATION_STEP_PERCENT;
+        }
+
+        if (percent < MIN_ADAPTIVE_YOUNG_GENERATION_PERCENT) {
+            percent = MIN_ADAPTIVE_YOUNG_GENERATION_PERCENT;
+        } else if (percent > MAX_ADAPTIVE_YOUNG_GENERATION_PERCENT) {
+            percent = MAX_ADAPTIVE_YOUNG_GENERATION_PERCENT;
+        }
+
+        if (percent != idealYoungGenerationSizePercent) {
+            idealYoungGenerationSizePercent = percent;
+            youngGenerationResizes++;
+            if (GC.GC_TRACING_SUPPORTED && tracing()) {
+                VM.print("Lisp2GenerationalCollector::adaptYoungGenerationSize - young generation resized to ");
+                VM.print(percent);
+                VM.println("% of heap");
+            }
+        }
+    }
+
     /**
      * Determines if the current collection is a full collection. That is, is it processing the
      * full heap as opposed to just the young generation.
@@ -706,6 +837,18 @@ public final class Lisp2GenerationalCollector extends GarbageCollector {
         return heapStart.eq(collectionStart);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    void recordTelemetry(long[] record, int offset) {
+        record[offset + GC.TELEMETRY_PROMOTED_BYTES] = lastPromotedBytes;
+        record[offset + GC.TELEMETRY_STACK_CHUNKS] = stackChunksScanned;
+        record[offset + GC.TELEMETRY_MARK_TIME] = timer.lastTimes[Timer.MARK];
+        record[offset + GC.TELEMETRY_COMPUTE_TIME] = timer.lastTimes[Timer.COMPUTE_ADDRESSES];
+        record[offset + GC.TELEMETRY_UPDATE_TIME] = timer.lastTimes[Timer.UPDATE_POINTERS];
+        record[offset + GC.TELEMETRY_SLIDE_TIME] = timer.lastTimes[Timer.COMPACT_OBJECTS];
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -714,6 +857,10 @@ public final class Lisp2GenerationalCollector extends GarbageCollector {
         partialCollectionTimer.dump(out, false, GC.getPartialCollectionCount());
         out.println("Object graph copying:");
         copyTimer.dump(out, "    ", false);
+        out.println("Young generation: [size = " + idealYoungGenerationSizePercent + "% of heap, " +
+                    "resizes = " + youngGenerationResizes + ", " +
+                    "last survival rate = " + lastSurvivalPercent + "%, " +
+                    "promoted = " + promotedBytes + " bytes]");
     }
 
     /*---------------------------------------------------------------------------*\
@@ -742,8 +889,13 @@ public final class Lisp2GenerationalCollector extends GarbageCollector {
 
         // Chooses the relevant timer
         timer = (isFullCollection() ? fullCollectionTimer : partialCollectionTimer);
+        timer.resetLastTimes();
         long start = timer.reset();
 
+        // Reset the per collection statistics.
+        lastPromotedBytes = 0;
+        stackChunksScanned = 0;
+
         // Sets up the marking stack.
         markingStack.setup(collectionEnd, Lisp2Bitmap.getStart());
 
@@ -805,6 +957,17 @@ public final class Lisp2GenerationalCollector extends GarbageCollector {
         // Zap the free space with deadbeefs
         VM.deadbeef(youngGenerationStart, collectionEnd);
 
+        // Record the survivors of a partial collection and adapt the young generation size accordingly.
+        if (!isFullCollection()) {
+            int survivorBytes = youngGenerationStart.diff(collectionStart).toInt();
+            lastPromotedBytes = survivorBytes;
+            promotedBytes += survivorBytes;
+            lastSurvivalPercent = asPercentOf(survivorBytes, collectionEnd.diff(collectionStart).toInt());
+            if (pauseTimeGoal != 0) {
+                adaptYoungGenerationSize(now() - start);
+            }
+        }
+
         // Set the main RAM allocator to the young generation.
         int youngGenerationSize = getYoungGenerationSize();
         allocTop = youngGenerationStart.add(youngGenerationSize);
@@ -1027,6 +1190,20 @@ public final class Lisp2GenerationalCollector extends GarbageCollector {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    Object getStackChunks() {
+        return stackChunks;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    boolean tracksStackChunks() {
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1490,6 +1667,10 @@ public final class Lisp2GenerationalCollector extends GarbageCollector {
     private void traverseOopsInStackChunk(Address chunk, int visitor, boolean header) {
         Address fp = NativeUnsafe.getAddress(chunk, SC.lastFP);
 
+        if (visitor == MARK_VISITOR) {
+            stackChunksScanned++;
+        }
+
         // Trace.
         if (GC.GC_TRACING_SUPPORTED && tracing()) {
             VM.println();
@@ -1968,6 +2149,9 @@ public final class Lisp2GenerationalCollector extends GarbageCollector {
             // Clear the referent to denote to postProcessWeakReferences() that the
             // Ref object should be removed from the global list of Ref objects
             if (!keep) {
+                if (!referent.isZero()) {
+                    clearedWeakReferences++;
+                }
                 ref.referent = Address.zero();
             }
 
@@ -403,25 +403,33 @@ public class ObjectMemoryLoader {
         // Skip the padding
         skipMemoryPadding(parent == null ? "" : parent.getURI(), size);
 
-        // Load the object memory
-        byte[] buffer = loadMemory(size);
+        Address relocatedBuffer;
+        int hash;
+        if (canStreamIntoReadOnlyMemory()) {
+            // Load, hash and relocate the object memory a chunk at a time straight into read-only memory
+            relocatedBuffer = streamIntoReadOnlyMemory(parent, size, oopMap);
+            hash = streamedHash;
+        } else {
+            // Load the object memory
+            byte[] buffer = loadMemory(size);
 
-        // Calculate the hash of the object memory while it is in canonical form
-        int hash = getHash(buffer);
+            // Calculate the hash of the object memory while it is in canonical form
+            hash = getHash(buffer);
 
-        // Run the collector to prevent a collection being run during relocation which
-        // will screw a RAM buffer
-        if (!VM.isHosted()) {
-            VM.collectGarbage(true);
-        }
+            // Run the collector to prevent a collection being run during relocation which
+            // will screw a RAM buffer
+            if (!VM.isHosted()) {
+                VM.collectGarbage(true);
+            }
 
-        // Relocate the pointers in the memory and move the buffer into read-only memory if necessary
-        Address relocatedBuffer = relocateMemory(parent, buffer, oopMap);
+            // Relocate the pointers in the memory and move the buffer into read-only memory if necessary
+            relocatedBuffer = relocateMemory(parent, buffer, oopMap);
 
-        // Need to do this one more time
-        if (!VM.isHosted() && !loadIntoReadOnlyMemory) {
-            if (buffer != relocatedBuffer.toObject()) {
-                throw new ObjectMemory.GCDuringRelocationError();
+            // Need to do this one more time
+            if (!VM.isHosted() && !loadIntoReadOnlyMemory) {
+                if (buffer != relocatedBuffer.toObject()) {
+                    throw new ObjectMemory.GCDuringRelocationError();
+                }
             }
         }
 
@@ -534,6 +542,115 @@ public class ObjectMemoryLoader {
         return buffer;
     }
 
+    /**
+     * The size (in bytes) of the RAM buffer used by {@link #streamIntoReadOnlyMemory}. This must
+     * be a multiple of 8 words so that each chunk starts on a byte boundary in the oop map.
+     */
+    private static final int STREAM_CHUNK_SIZE = 8 * 1024;
+
+    /**
+     * The hash of the object memory computed by {@link #streamIntoReadOnlyMemory}.
+     */
+    private int streamedHash;
+
+    /**
+     * Determines if the 'memory' component can be loaded with {@link #streamIntoReadOnlyMemory}
+     * instead of being loaded into a RAM buffer the size of the object memory and then copied.
+     *
+     * @return true if the object memory is being loaded into read-only memory by Squawk and
+     *         its pointers do not need their endianess swapped
+     */
+    protected boolean canStreamIntoReadOnlyMemory() {
+        return loadIntoReadOnlyMemory && !VM.isHosted() && !requiresEndianSwap;
+    }
+
+    /**
+     * Loads the 'memory' component from the input stream directly into read-only memory. The
+     * memory is read into a small RAM buffer one chunk at a time. The pointers in each chunk are
+     * relocated and the chunk is then copied to its final location. This means that the RAM
+     * required to load an object memory is independent of its size. The hash of the memory in
+     * its canonical form is computed along the way and stored in {@link #streamedHash}.
+     *
+     * @param parent     the loaded/resolved parent object memory
+     * @param size       the size of memory as specified by the 'size' element of the object memory
+     * @param oopMap     the bit set encapsulating the 'oopmap' component
+     * @return the address of the relocated memory in read-only memory
+     */
+    private Address streamIntoReadOnlyMemory(ObjectMemory parent, int size, BitSet oopMap) {
+        Assert.that(size == GC.roundUpToWord(size));
+        Address canonicalStart = parent == null ? Address.zero() : parent.getCanonicalEnd();
+        Address canonicalEnd = canonicalStart.add(size);
+        Address relocatedBufferAddress = GC.allocateNvmBuffer(size);
+        Offset delta = relocatedBufferAddress.diff(canonicalStart);
+
+        byte[] chunk = new byte[Math.min(size, STREAM_CHUNK_SIZE)];
+        int hash = size;
+        int offset = 0;
+        while (offset < size) {
+            if (size - offset < chunk.length) {
+                chunk = new byte[size - offset];
+            }
+            reader.readFully(chunk, "memory");
+            for (int i = 0; i != chunk.length; ++i) {
+                hash += chunk[i];
+            }
+
+            // Relocate the pointers in the chunk. Nothing between here and the copy below
+            // can cause a collection so the address of the chunk is stable.
+            Address chunkAddress = Address.fromObject(chunk);
+            int firstWord = offset / HDR.BYTES_PER_WORD;
+            int endWord = firstWord + (chunk.length / HDR.BYTES_PER_WORD);
+            for (int word = oopMap.nextSetBit(firstWord); word != -1 && word < endWord; word = oopMap.nextSetBit(word + 1)) {
+                Address pointerAddress = chunkAddress.add((word - firstWord) * HDR.BYTES_PER_WORD);
+                Address pointer = NativeUnsafe.getAddress(pointerAddress, 0);
+                if (!pointer.isZero()) {
+                    if (pointer.hi(canonicalStart) && pointer.loeq(canonicalEnd)) {
+                        pointer = pointer.addOffset(delta);
+                    } else {
+                        ObjectMemory target = parent;
+                        while (target != null && !(pointer.hi(target.getCanonicalStart()) && pointer.loeq(target.getCanonicalEnd()))) {
+                            target = target.getParent();
+                        }
+                        if (target == null) {
+                            continue; // reported below
+                        }
+                        pointer = pointer.addOffset(target.getStart().diff(target.getCanonicalStart()));
+                    }
+                    NativeUnsafe.setAddress(pointerAddress, 0, pointer);
+                }
+                oopMap.clear(word);
+            }
+
+            VM.copyBytes(chunkAddress, 0, relocatedBufferAddress, offset, chunk.length, true);
+/*if[TYPEMAP]*/
+            if (VM.usingTypeMap()) {
+                NativeUnsafe.copyTypes(chunkAddress, relocatedBufferAddress.add(offset), chunk.length);
+            }
+/*end[TYPEMAP]*/
+            offset += chunk.length;
+        }
+
+        Assert.always(oopMap.cardinality() == 0, "some pointers were not relocated");
+        streamedHash = hash;
+        return relocatedBufferAddress;
+    }
+
+    /**
+     * Determines if an object memory and all its parents reside at their canonical addresses.
+     *
+     * @param om  the object memory to test (may be null)
+     * @return true if the pointers into <code>om</code> and its parents do not need relocating
+     */
+    private static boolean isAtCanonicalAddress(ObjectMemory om) {
+        while (om != null) {
+            if (!om.getStart().eq(om.getCanonicalStart())) {
+                return false;
+            }
+            om = om.getParent();
+        }
+        return true;
+    }
+
     /**
      * Relocates the memory.
      *
@@ -567,11 +684,16 @@ public class ObjectMemoryLoader {
             buffer = null;
         }
 
-        // Relocate the pointers to the other object memories against which this object memory is bound
-        ObjectMemory.relocateParents(url, buffer, bufferAddress, oopMap, parent, false, requiresEndianSwap, tracing);
+        if (!requiresEndianSwap && bufferAddress.eq(canonicalStart) && relocatedBufferAddress.eq(canonicalStart) && isAtCanonicalAddress(parent)) {
+            // Every pointer already has its final value (e.g. the hosted memory model)
+            oopMap.clear();
+        } else {
+            // Relocate the pointers to the other object memories against which this object memory is bound
+            ObjectMemory.relocateParents(url, buffer, bufferAddress, oopMap, parent, false, requiresEndianSwap, tracing);
 
-        // Relocate the pointers within this object memory
-        ObjectMemory.relocate(url, buffer, bufferAddress, oopMap, relocatedBufferAddress, canonicalStart, size, false, requiresEndianSwap, tracing, true);
+            // Relocate the pointers within this object memory
+            ObjectMemory.relocate(url, buffer, bufferAddress, oopMap, relocatedBufferAddress, canonicalStart, size, false, requiresEndianSwap, tracing, true);
+        }
 
         Assert.always(oopMap.cardinality() == 0, "some pointers were not relocated");
 
@@ -174,6 +174,17 @@ public class VM implements GlobalStaticFields {
      * Global hashtable of registered mailboxes.
      */
     private static SquawkHashtable registeredMailboxes;
+
+    /**
+     * Counter for the number of interface method slot lookups performed by the interpreter.
+     */
+    private static int interfaceCacheAccesses;
+
+    /**
+     * Counter for the number of interface method slot lookups satisfied by the interpreter's
+     * per call site interface dispatch cache.
+     */
+    private static int interfaceCacheHits;
     
     
     /*=======================================================================*\
@@ -1253,7 +1264,8 @@ hbp.dumpState();
     native static void addToClassStateCache(Object klass, Object state);
 
     /**
-     * Invalidate the class cache.
+     * Invalidate the class cache. This also flushes any entries in the interpreter's
+     * interface dispatch cache that refer to objects that may be moved by the collector.
      *
      * @return true if it was already invalid.
      */
@@ -1954,6 +1966,27 @@ hbp.dumpState();
         return getBranchCount();
     }
 
+    /**
+     * Gets the number of interface method slot lookups performed by the interpreter since
+     * the last time the cache statistics were reset.
+     *
+     * @return the number of interface method slot lookups
+     */
+    public static int getInterfaceCacheAccesses() {
+        return interfaceCacheAccesses;
+    }
+
+    /**
+     * Gets the number of interface method slot lookups that were satisfied by the
+     * interpreter's per call site interface dispatch cache since the last time the
+     * cache statistics were reset.
+     *
+     * @return the number of interface dispatch cache hits
+     */
+    public static int getInterfaceCacheHits() {
+        return interfaceCacheHits;
+    }
+
     /**
      * Start the VM tracing if tracing support is enabled.
      */
@@ -1961,6 +1994,32 @@ hbp.dumpState();
         setGlobalInt(1, Global.getOffset(Global.tracing));
     }
 
+    /**
+     * Writes a snapshot of the call tree into which a profiling VM started with the
+     * <code>-Xproftree:&lt;file&gt;</code> option aggregates its profile samples. The n'th
+     * snapshot is written to '&lt;file&gt;.n' in the same format as the tree written to
+     * '&lt;file&gt;' when the VM exits. These files can be converted to collapsed stacks
+     * with com.sun.squawk.traces.FlameGraphExporter.
+     *
+     * @param reset  if true, the tree is emptied after the snapshot is written so that the
+     *               next snapshot only contains the samples taken after this one
+     * @return the number of samples in the snapshot or -1 if the VM is not aggregating profile samples
+     */
+    public static long snapshotProfile(boolean reset) {
+        // Must get high word first as it causes the value to be setup that will be accessed via the INTERNAL_LOW_RESULT call
+        long high = execSyncIO(ChannelConstants.INTERNAL_PROFILE_SNAPSHOT, reset ? 1 : 0);
+        long low  = execSyncIO(ChannelConstants.INTERNAL_LOW_RESULT, 0);
+        return (high << 32) | (low & 0x00000000FFFFFFFFL);
+    }
+
+    /**
+     * Discards the profile samples aggregated so far by a profiling VM started with the
+     * <code>-Xproftree:&lt;file&gt;</code> option. This does nothing in other VMs.
+     */
+    public static void resetProfile() {
+        execSyncIO(ChannelConstants.INTERNAL_PROFILE_RESET, 0);
+    }
+
     /**
      * Gets the flag indicating if the VM is running in verbose mode.
      *
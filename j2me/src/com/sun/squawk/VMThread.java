@@ -206,6 +206,9 @@ public final class VMThread implements GlobalStaticFields {
 /*if[FINALIZATION]*/
             startFinalizers();
 /*end[FINALIZATION]*/
+/*if[IDLEGC]*/
+            millis = collectGarbageBeforeBlocking(millis);
+/*end[IDLEGC]*/
             addToTimerQueue(null, millis);
             reschedule();
 
@@ -214,6 +217,33 @@ public final class VMThread implements GlobalStaticFields {
         }
     }
 
+/*if[IDLEGC]*/
+    /**
+     * Uses the time that the current thread is about to spend blocked on the timer
+     * queue for a full collection that would otherwise pause a running thread. This
+     * is only done if no other thread is runnable and the collector expects the
+     * collection to finish before the next thread is due to wake up.
+     * <p>
+     * The collection is performed by the current thread, not by the scheduler.
+     * Threads blocked on an event may still be delayed by it if their event occurs
+     * during the collection.
+     *
+     * @param millis  the time the current thread is about to block for
+     * @return the time the current thread should still block for once the collection
+     *         (if any) is done
+     */
+    private static long collectGarbageBeforeBlocking(long millis) {
+        if (runnableThreads.size() != 0) {
+            return millis;
+        }
+        long start = System.currentTimeMillis();
+        if (!GC.collectGarbageIfIdle(Math.min(millis, timerQueue.nextDelta()))) {
+            return millis;
+        }
+        return Math.max(1, millis - (System.currentTimeMillis() - start));
+    }
+/*end[IDLEGC]*/
+
     /**
      * Adds a given thread to the queue of runnable threads.
      *
@@ -546,6 +576,18 @@ public final class VMThread implements GlobalStaticFields {
      */
     private final int stackSize;
 
+    /**
+     * The largest number of words of stack that this thread is known to have needed. This is sampled
+     * when the stack is extended and when the stack is checked for shrinking after a full collection.
+     */
+    private int stackHighWaterMark;
+
+    /**
+     * Set while {@link #extendStack} is running so that a collection triggered by the allocation
+     * of the new stack does not shrink the stack being extended.
+     */
+    private static boolean extending;
+
     /**
      * The API thread instance.
      */
@@ -582,10 +624,15 @@ public final class VMThread implements GlobalStaticFields {
     private boolean isDaemon;
 
     /**
-     * Reference used for enqueueing in the timer queue.
+     * Reference used for linking the timer-blocked threads of a hibernated isolate.
      */
     VMThread nextTimerThread;
 
+    /**
+     * The position of this thread in the timer queue's heap (only valid while {@link #time} is not 0).
+     */
+    int timerIndex;
+
     /**
      * Threads waiting for this thread to die.
      */
@@ -1055,6 +1102,10 @@ VM.println();
             throw VM.getOutOfMemoryError();
         }
 
+        // Make room for this thread in the timer queue now so that
+        // putting it on the queue never needs to allocate
+        timerQueue.reserve();
+
 //VM.print("Thread::baptiseThread - stack size = ");
 //VM.println(stackSize);
         state = ALIVE;
@@ -1092,7 +1143,18 @@ VM.println();
             }
         }
 
+        if (VM.isVeryVerbose()) {
+            VM.print("[thread ");
+            VM.print(threadNumber);
+            VM.print(" exited: stack high water mark ");
+            VM.print(Math.max(stackHighWaterMark, stackSize));
+            VM.print(" words, final stack size ");
+            VM.print(GC.getArrayLength(stack));
+            VM.println(" words]");
+        }
+
         state = DEAD;
+        timerQueue.release();
 
         // Remove the connection between the stack chunk and this thread which will
         // indicate to the garbage collector that the stack chunk is dead
@@ -1229,7 +1291,10 @@ if (!(fp.hi(Address.fromObject(stack)) && fp.loeq(stackEnd))) {
         if (newSize < minSize) {
             newSize = minSize * 2;
         }
+        otherThread.recordStackUse(minSize);
+        extending = true;
         Object newStack = newStack(newSize, otherThread, false);
+        extending = false;
         if (newStack == null) {
             return false;
         } else {
@@ -1241,6 +1306,74 @@ if (!(fp.hi(Address.fromObject(stack)) && fp.loeq(stackEnd))) {
         }
     }
 
+    /**
+     * Replaces the stack of this thread with a smaller one if its current depth uses less than a quarter of it.
+     * The new stack is twice the current depth (but no smaller than the size the thread was created with)
+     * so that returning to a moderate depth does not immediately extend it again.
+     * <p>
+     * This is called on the service thread after a full collection, when this thread is suspended.
+     * No collection is performed if the new stack cannot be allocated.
+     *
+     * @return the number of words released or 0 if the stack was not shrunk
+     */
+    int shrinkStack() {
+        if (this == serviceThread || extending || stack == null) {
+            return 0;
+        }
+        Address lastFP = NativeUnsafe.getAddress(stack, SC.lastFP);
+        if (lastFP.isZero()) {
+            return 0; // the thread has not run yet
+        }
+
+        final int oldSize = GC.getArrayLength(stack);
+        int used = framePointerAsOffset(lastFP).toInt() / HDR.BYTES_PER_WORD + SC.limit;
+        recordStackUse(used);
+
+        int newSize = Math.max(Math.max(stackSize, MIN_STACK_SIZE), used * 2);
+        if (newSize > oldSize / 2) {
+            return 0;
+        }
+        Object newStack = GC.newStack(newSize, this);
+        if (newStack == null) {
+            return 0;
+        }
+        GC.stackCopy(stack, newStack);
+        stack = newStack;
+        return oldSize - newSize;
+    }
+
+    /**
+     * Updates the stack high water mark of this thread.
+     *
+     * @param words  the number of words of stack in use
+     */
+    private void recordStackUse(int words) {
+        if (words > stackHighWaterMark) {
+            stackHighWaterMark = words;
+        }
+    }
+
+    /**
+     * Gets the largest number of words of stack that this thread is known to have needed.
+     * This is sampled each time the stack is extended and, if stack shrinking is enabled, after
+     * each full collection, so it may under-estimate the true maximum depth.
+     *
+     * @return the stack high water mark in words
+     */
+    public final int getStackHighWaterMark() {
+        return stackHighWaterMark;
+    }
+
+    /**
+     * Gets the current size of this thread's stack.
+     *
+     * @return the number of words in this thread's stack or 0 if it has not been started or is dead
+     */
+    public final int getStackLength() {
+        Object s = stack;
+        return (s == null || state != ALIVE) ? 0 : GC.getArrayLength(s);
+    }
+
     /**
      * Call the run() method of a thread. This is called by the VM when a new thread is started.
      * The call sequence is that Thread.start() calls Thread.reschedule() which calls VM.switchToThread()
@@ -1732,6 +1865,9 @@ VM.println(VM.branchCount());
 
         // Add to timer queue if time is > 0
         if (delta > 0) {
+/*if[IDLEGC]*/
+            delta = collectGarbageBeforeBlocking(delta);
+/*end[IDLEGC]*/
             timerQueue.add(currentThread, delta);
         }
 
@@ -2326,9 +2462,15 @@ final class Monitor {
 final class ThreadQueue {
 
     /**
-     * The first thread in the queue.
+     * The first thread in the queue for each priority level. Threads of the same
+     * priority are scheduled in the order in which they were added.
      */
-    VMThread first;
+    private final VMThread[] first = new VMThread[VMThread.MAX_PRIORITY + 1];
+
+    /**
+     * The last thread in the queue for each priority level.
+     */
+    private final VMThread[] last = new VMThread[VMThread.MAX_PRIORITY + 1];
 
     /**
      * The count of threads in the queue.
@@ -2344,21 +2486,13 @@ final class ThreadQueue {
         Assert.that(thread.isAlive());
         thread.setInQueue(VMThread.Q_RUN);
         count++;
-        if (first == null) {
-            first = thread;
+        int priority = thread.priority;
+        if (first[priority] == null) {
+            first[priority] = thread;
         } else {
-            if (first.priority < thread.priority) {
-                thread.nextThread = first;
-                first = thread;
-            } else {
-                VMThread last = first;
-                while (last.nextThread != null && last.nextThread.priority >= thread.priority) {
-                    last = last.nextThread;
-                }
-                thread.nextThread = last.nextThread;
-                last.nextThread = thread;
-            }
+            last[priority].nextThread = thread;
         }
+        last[priority] = thread;
     }
 
     /**
@@ -2381,26 +2515,32 @@ final class ThreadQueue {
      * @return a thread or null if there is none
      */
     VMThread next() {
-        VMThread thread = first;
-        VMThread skipped = null;
-
-        // Skip over threads suspended by the debugger
-        while (thread != null && thread.getDebuggerSuspendCount() != 0) {
-            skipped = thread;
-            thread = thread.nextThread;
-        }
+        for (int priority = VMThread.MAX_PRIORITY; priority >= VMThread.MIN_PRIORITY; priority--) {
+            VMThread thread = first[priority];
+            VMThread skipped = null;
+
+            // Skip over threads suspended by the debugger
+            while (thread != null && thread.getDebuggerSuspendCount() != 0) {
+                skipped = thread;
+                thread = thread.nextThread;
+            }
 
-        if (thread != null) {
-            thread.setNotInQueue(VMThread.Q_RUN);
-            if (skipped == null) {
-                first = thread.nextThread;
-            } else {
-                skipped.nextThread = thread.nextThread;
+            if (thread != null) {
+                thread.setNotInQueue(VMThread.Q_RUN);
+                if (skipped == null) {
+                    first[priority] = thread.nextThread;
+                } else {
+                    skipped.nextThread = thread.nextThread;
+                }
+                if (last[priority] == thread) {
+                    last[priority] = skipped;
+                }
+                thread.nextThread = null;
+                count--;
+                return thread;
             }
-            thread.nextThread = null;
-            count--;
         }
-        return thread;
+        return null;
     }
 
     /**
@@ -2410,19 +2550,22 @@ final class ThreadQueue {
      * @param isolate  the isolate whose runnable threads are to be removed
      */
     void prune(Isolate isolate) {
-        VMThread oldQueue = first;
-        count = 0;
-        first = null;
-        while(oldQueue != null) {
-            VMThread thread = oldQueue;
-            oldQueue = oldQueue.nextThread;
-            thread.nextThread = null;
-            thread.setNotInQueue(VMThread.Q_RUN);
-            if (thread.getIsolate() != isolate) {
-                add(thread);
-            } else {
-                thread.setInQueue(VMThread.Q_HIBERNATEDRUN);
-                isolate.addToHibernatedRunThread(thread);
+        for (int priority = VMThread.MAX_PRIORITY; priority >= VMThread.MIN_PRIORITY; priority--) {
+            VMThread oldQueue = first[priority];
+            first[priority] = null;
+            last[priority] = null;
+            while (oldQueue != null) {
+                VMThread thread = oldQueue;
+                oldQueue = oldQueue.nextThread;
+                thread.nextThread = null;
+                thread.setNotInQueue(VMThread.Q_RUN);
+                count--;
+                if (thread.getIsolate() != isolate) {
+                    add(thread);
+                } else {
+                    thread.setInQueue(VMThread.Q_HIBERNATEDRUN);
+                    isolate.addToHibernatedRunThread(thread);
+                }
             }
         }
     }
@@ -2433,12 +2576,67 @@ final class ThreadQueue {
  *                               TimerQueue                              *
 \*=======================================================================*/
 
+/**
+ * The queue of threads waiting for a time to be reached. The queue is a binary
+ * min-heap ordered by {@link VMThread#time} so that adding and removing a thread
+ * takes O(log n) time. Each thread records its position in the heap in
+ * {@link VMThread#timerIndex} so that it can be removed without a search.
+ */
 final class TimerQueue {
 
     /**
-     * The first thread in the queue.
+     * The initial capacity of the heap.
      */
-    VMThread first;
+    private final static int INITIAL_CAPACITY = 8;
+
+    /**
+     * The heap of threads. The thread with the earliest time is at index 0.
+     */
+    private VMThread[] heap = new VMThread[INITIAL_CAPACITY];
+
+    /**
+     * The number of threads in the heap.
+     */
+    private int size;
+
+    /**
+     * The number of live threads for which room has been reserved in the heap.
+     */
+    private int reserved;
+
+    /**
+     * Reserves room in the heap for a thread that is about to start. This is
+     * called by the starting thread, so that the scheduler does not
+     * have to grow the heap when the new thread is later added to the queue.
+     *
+     * @throws OutOfMemoryError if the heap could not be grown
+     */
+    void reserve() {
+        ensureCapacity(reserved + 1);
+        reserved++;
+    }
+
+    /**
+     * Releases the room reserved for a thread that has died.
+     */
+    void release() {
+        if (reserved > 0) {
+            reserved--;
+        }
+    }
+
+    /**
+     * Grows the heap so that it can hold at least a given number of threads.
+     *
+     * @param capacity  the number of threads
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > heap.length) {
+            VMThread[] newHeap = new VMThread[Math.max(capacity, heap.length * 2)];
+            System.arraycopy(heap, 0, newHeap, 0, size);
+            heap = newHeap;
+        }
+    }
 
     /**
      * Add a thread to the queue.
@@ -2448,6 +2646,11 @@ final class TimerQueue {
      */
     void add(VMThread thread, long delta) {
         Assert.that(thread.nextTimerThread == null);
+
+        // Threads that were not started by this VM (e.g. those of an unhibernated
+        // isolate) may not have reserved room. Any allocation must happen
+        // before the thread's state is changed.
+        ensureCapacity(size + 1);
         thread.time = System.currentTimeMillis() + delta;
         if (thread.time < 0) {
 
@@ -2458,21 +2661,7 @@ final class TimerQueue {
             */
             thread.time = Long.MAX_VALUE;
         }
-        if (first == null) {
-            first = thread;
-        } else {
-            if (first.time > thread.time) {
-                thread.nextTimerThread = first;
-                first = thread;
-            } else {
-                VMThread last = first;
-                while (last.nextTimerThread != null && last.nextTimerThread.time < thread.time) {
-                    last = last.nextTimerThread;
-                }
-                thread.nextTimerThread = last.nextTimerThread;
-                last.nextTimerThread = thread;
-            }
-        }
+        siftUp(thread, size++);
     }
 
     /**
@@ -2481,12 +2670,11 @@ final class TimerQueue {
      * @return a thread or null if there is none
      */
     VMThread next() {
-        VMThread thread = first;
-        if (thread == null || thread.time > System.currentTimeMillis()) {
+        if (size == 0 || heap[0].time > System.currentTimeMillis()) {
             return null;
         }
-        first = first.nextTimerThread;
-        thread.nextTimerThread = null;
+        VMThread thread = heap[0];
+        removeAt(0);
         Assert.that(thread.time != 0);
         thread.time = 0;
         return thread;
@@ -2498,29 +2686,19 @@ final class TimerQueue {
      * @param thread the thread
      */
     void remove(VMThread thread) {
-        if (first == null) {
+        if (size == 0) {
             Assert.that(thread.time == 0);
             return;
         }
         if (thread.time == 0) {
             return;
         }
-        thread.time = 0;
-        if (thread == first) {
-            first = thread.nextTimerThread;
-            thread.nextTimerThread = null;
-            return;
-        }
-        VMThread p = first;
-        while (p.nextTimerThread != null) {
-            if (p.nextTimerThread == thread) {
-                p.nextTimerThread = thread.nextTimerThread;
-                thread.nextTimerThread = null;
-                return;
-            }
-            p = p.nextTimerThread;
+        int index = thread.timerIndex;
+        if (index >= size || heap[index] != thread) {
+            VM.fatalVMError();
         }
-        VM.fatalVMError();
+        thread.time = 0;
+        removeAt(index);
     }
 
     /**
@@ -2529,19 +2707,18 @@ final class TimerQueue {
      * @return the time
      */
     long nextDelta() {
-        if (first != null) {
+        if (size != 0) {
             long now = System.currentTimeMillis();
-            if (now >= first.time) {
+            long time = heap[0].time;
+            if (now >= time) {
                 return 0;
             }
-            long res = first.time - now;
-            return res;
+            return time - now;
         } else {
             return Long.MAX_VALUE;
         }
     }
 
-
     /**
      * Remove all the threads in this queue that are owned by <code>isolate</code>
      * and add them to the queue of hibernated timer-blocked threads in the isolate.
@@ -2549,23 +2726,98 @@ final class TimerQueue {
      * @param isolate  the isolate whose timer-blocked threads are to be removed
      */
     void prune(Isolate isolate) {
-        start:
-        while (true) {
-            VMThread t = first;
-            while (t != null) {
-                if (t.getIsolate() == isolate) {
-                    long time = t.time - System.currentTimeMillis();
-                    remove(t);
-                    t.time = time;
-                    isolate.addToHibernatedTimerThread(t);
-                    continue start;
-                }
-                t = t.nextTimerThread;
+        long now = System.currentTimeMillis();
+        int oldSize = size;
+        size = 0;
+        for (int i = 0; i != oldSize; i++) {
+            VMThread t = heap[i];
+            heap[i] = null;
+            if (t.getIsolate() == isolate) {
+                t.time = t.time - now;
+                t.timerIndex = 0;
+                isolate.addToHibernatedTimerThread(t);
+            } else {
+                heap[size++] = t;
             }
-            break;
+        }
+
+        // Restore the heap ordering of the remaining threads
+        for (int i = (size >> 1) - 1; i >= 0; i--) {
+            siftDown(heap[i], i);
+        }
+        for (int i = 0; i != size; i++) {
+            heap[i].timerIndex = i;
         }
     }
 
+    /**
+     * Removes the thread at a given position in the heap, restoring the heap ordering.
+     *
+     * @param index  the position of the thread to remove
+     */
+    private void removeAt(int index) {
+        VMThread removed = heap[index];
+        removed.timerIndex = 0;
+        size--;
+        VMThread moved = heap[size];
+        heap[size] = null;
+        if (index != size) {
+            siftDown(moved, index);
+            if (heap[index] == moved) {
+                siftUp(moved, index);
+            }
+        }
+    }
+
+    /**
+     * Places a thread in the heap by moving it up from a given position
+     * until its parent has an earlier or equal time.
+     *
+     * @param thread  the thread to place
+     * @param index   the starting position
+     */
+    private void siftUp(VMThread thread, int index) {
+        while (index > 0) {
+            int parentIndex = (index - 1) >> 1;
+            VMThread parent = heap[parentIndex];
+            if (parent.time <= thread.time) {
+                break;
+            }
+            heap[index] = parent;
+            parent.timerIndex = index;
+            index = parentIndex;
+        }
+        heap[index] = thread;
+        thread.timerIndex = index;
+    }
+
+    /**
+     * Places a thread in the heap by moving it down from a given position
+     * until both its children have a later or equal time.
+     *
+     * @param thread  the thread to place
+     * @param index   the starting position
+     */
+    private void siftDown(VMThread thread, int index) {
+        int half = size >> 1;
+        while (index < half) {
+            int childIndex = (index << 1) + 1;
+            VMThread child = heap[childIndex];
+            int rightIndex = childIndex + 1;
+            if (rightIndex < size && heap[rightIndex].time < child.time) {
+                childIndex = rightIndex;
+                child = heap[childIndex];
+            }
+            if (thread.time <= child.time) {
+                break;
+            }
+            heap[index] = child;
+            child.timerIndex = index;
+            index = childIndex;
+        }
+        heap[index] = thread;
+        thread.timerIndex = index;
+    }
 }
 
 /**
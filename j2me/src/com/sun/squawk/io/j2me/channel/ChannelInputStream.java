@@ -14,16 +14,50 @@ import com.sun.squawk.*;
 
 /**
  * ChannelInputStream
+ * <p>
+ * If the BUFFERCHANNELINPUT build property is true, input is read from the channel
+ * a buffer at a time with a single READBUF operation and the primitive read methods
+ * decode their values from the buffer instead of each making a channel call.
+ * Reads that are at least as large as the buffer are filled directly from the channel.
+ * Mark and reset are not supported when buffering.
  */
 public class ChannelInputStream extends InputStream {
 
+    /**
+     * Specifies if this stream buffers its input.
+     */
+    private static final boolean BUFFERED = /*VAL*/false/*BUFFERCHANNELINPUT*/;
+
+    /**
+     * The size of the input buffer.
+     */
+    private static final int BUFFER_SIZE = 2048;
+
     Protocol parent;
     int channelID;
 
+    /**
+     * The buffered input (null if not buffering).
+     */
+    private byte[] buf;
+
+    /**
+     * The index of the next byte to be read from <code>buf</code>.
+     */
+    private int pos;
+
+    /**
+     * The index one greater than the last valid byte in <code>buf</code>.
+     */
+    private int count;
+
     public ChannelInputStream(Protocol parent) throws IOException {
         this.parent = parent;
         this.channelID = parent.channelID.id;
         VM.execIO(ChannelConstants.OPENINPUT, channelID, 0, 0, 0, 0, 0, 0, null, null);
+        if (BUFFERED) {
+            buf = new byte[BUFFER_SIZE];
+        }
     }
 
     public void close() throws IOException {
@@ -32,21 +66,98 @@ public class ChannelInputStream extends InputStream {
             channelID = -1;
             parent.decrementCount();
         }
+        buf = null;
+        pos = count = 0;
+    }
+
+    /**
+     * Throws an IOException if this stream has been closed.
+     */
+    private void ensureOpen() throws IOException {
+        if (channelID == -1) {
+            throw new IOException("closed");
+        }
+    }
+
+    /**
+     * Refills the buffer with a single READBUF operation. The buffer must be empty.
+     *
+     * @return false if the end of the stream has been reached
+     */
+    private boolean fill() throws IOException {
+        pos = count = 0;
+        int n = VM.execIO(ChannelConstants.READBUF, channelID, 0, buf.length, 0, 0, 0, 0, null, buf);
+        if (n <= 0) {
+            return false;
+        }
+        count = n;
+        return true;
+    }
+
+    /**
+     * Ensures there are at least <code>n</code> bytes in the buffer, moving any
+     * remaining bytes to the start of the buffer first if necessary.
+     *
+     * @param n  the number of bytes required (at most the buffer size)
+     * @throws EOFException if the end of the stream is reached first
+     */
+    private void require(int n) throws IOException {
+        if (count - pos >= n) {
+            return;
+        }
+        int remaining = count - pos;
+        System.arraycopy(buf, pos, buf, 0, remaining);
+        pos = 0;
+        count = remaining;
+        while (count < n) {
+            int r = VM.execIO(ChannelConstants.READBUF, channelID, count, buf.length - count, 0, 0, 0, 0, null, buf);
+            if (r <= 0) {
+                throw new EOFException();
+            }
+            count += r;
+        }
     }
 
     public int read() throws IOException {
+        ensureOpen();
+        if (BUFFERED) {
+            if (pos == count && !fill()) {
+                return -1;
+            }
+            return buf[pos++] & 0xFF;
+        }
         return VM.execIO(ChannelConstants.READBYTE, channelID, 0, 0, 0, 0, 0, 0, null, null);
     }
 
     public int readUnsignedShort() throws IOException {
+        ensureOpen();
+        if (BUFFERED) {
+            require(2);
+            int v = ((buf[pos] & 0xFF) << 8) | (buf[pos + 1] & 0xFF);
+            pos += 2;
+            return v;
+        }
         return VM.execIO(ChannelConstants.READSHORT, channelID, 0, 0, 0, 0, 0, 0, null, null);
     }
 
     public int readInt() throws IOException {
+        ensureOpen();
+        if (BUFFERED) {
+            require(4);
+            int v = ((buf[pos] & 0xFF) << 24) | ((buf[pos + 1] & 0xFF) << 16) | ((buf[pos + 2] & 0xFF) << 8) | (buf[pos + 3] & 0xFF);
+            pos += 4;
+            return v;
+        }
         return VM.execIO(ChannelConstants.READINT, channelID, 0, 0, 0, 0, 0, 0, null, null);
     }
 
     public long readLong() throws IOException {
+        ensureOpen();
+        if (BUFFERED) {
+            int high = readInt();
+            int low = readInt();
+            return ((long)high << 32) | (low & 0xFFFFFFFFL);
+        }
         return VM.execIOLong(ChannelConstants.READLONG, channelID, 0, 0, 0, 0, 0, 0, null, null);
     }
 
@@ -54,18 +165,58 @@ public class ChannelInputStream extends InputStream {
         if (b == null) {
             throw new NullPointerException();
         }
+        ensureOpen();
+        if (BUFFERED) {
+            if (off < 0 || len < 0 || off + len > b.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (pos == count) {
+                if (len >= buf.length) {
+                    int n = VM.execIO(ChannelConstants.READBUF, channelID, off, len, 0, 0, 0, 0, null, b);
+                    return n <= 0 ? -1 : n;
+                }
+                if (!fill()) {
+                    return -1;
+                }
+            }
+            int n = Math.min(len, count - pos);
+            System.arraycopy(buf, pos, b, off, n);
+            pos += n;
+            return n;
+        }
         return VM.execIO(ChannelConstants.READBUF, channelID, off, len, 0, 0, 0, 0, null, b);
     }
 
     public long skip(long n) throws IOException {
+        ensureOpen();
+        if (BUFFERED && n > 0) {
+            int buffered = count - pos;
+            if (n <= buffered) {
+                pos += (int)n;
+                return n;
+            }
+            pos = count = 0;
+            n -= buffered;
+            return buffered + VM.execIO(ChannelConstants.SKIP, channelID, (int)(n >>> 32), (int)n, 0, 0, 0, 0, null, null);
+        }
         return VM.execIO(ChannelConstants.SKIP, channelID, (int)(n >>> 32), (int)n, 0, 0, 0, 0, null, null);
     }
 
     public int available() throws IOException {
+        ensureOpen();
+        if (BUFFERED) {
+            return (count - pos) + VM.execIO(ChannelConstants.AVAILABLE, channelID, 0, 0, 0, 0, 0, 0, null, null);
+        }
         return VM.execIO(ChannelConstants.AVAILABLE, channelID, 0, 0, 0, 0, 0, 0, null, null);
     }
 
     public void mark(int readlimit) {
+        if (BUFFERED) {
+            return;
+        }
         try {
             VM.execIO(ChannelConstants.MARK, channelID, readlimit, 0, 0, 0, 0, 0, null, null);
         } catch (IOException ex) {}
@@ -73,10 +224,17 @@ public class ChannelInputStream extends InputStream {
     }
 
     public void reset() throws IOException {
+        ensureOpen();
+        if (BUFFERED) {
+            throw new IOException("mark/reset not supported");
+        }
         VM.execIO(ChannelConstants.RESET, channelID, 0, 0, 0, 0, 0, 0, null, null);
     }
 
     public boolean markSupported() {
+        if (BUFFERED) {
+            return false;
+        }
         try {
             int res = VM.execIO(ChannelConstants.MARK, channelID, 0, 0, 0, 0, 0, 0, null, null);
             return res != 0;
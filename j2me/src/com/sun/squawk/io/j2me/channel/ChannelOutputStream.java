@@ -14,33 +14,113 @@ import com.sun.squawk.*;
 
 /**
  * ChannelOutputStream
+ * <p>
+ * If the BUFFERCHANNELOUTPUT build property is true, output is collected in a buffer
+ * and sent to the channel with a single WRITEBUF operation when the buffer is full or
+ * when the stream is flushed or closed. The primitive write methods encode their values
+ * into the buffer in the same (big endian) format as the corresponding channel operations.
  */
 public class ChannelOutputStream extends OutputStream {
 
+    /**
+     * Specifies if this stream buffers its output.
+     */
+    private static final boolean BUFFERED = /*VAL*/false/*BUFFERCHANNELOUTPUT*/;
+
+    /**
+     * The size of the output buffer.
+     */
+    private static final int BUFFER_SIZE = 2048;
+
     Protocol parent;
     int channelID;
 
+    /**
+     * The buffered output (null if not buffering).
+     */
+    private byte[] buf;
+
+    /**
+     * The number of valid bytes in <code>buf</code>.
+     */
+    private int count;
+
     public ChannelOutputStream(Protocol parent) throws IOException {
         this.parent = parent;
         this.channelID = parent.channelID.id;
         VM.execIO(ChannelConstants.OPENOUTPUT, channelID, 0, 0, 0, 0, 0, 0, null, null);
+        if (BUFFERED) {
+            buf = new byte[BUFFER_SIZE];
+        }
+    }
+
+    /**
+     * Throws an IOException if this stream has been closed.
+     */
+    private void ensureOpen() throws IOException {
+        if (channelID == -1) {
+            throw new IOException("closed");
+        }
+    }
+
+    /**
+     * Sends the contents of the buffer to the channel.
+     */
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            VM.execIO(ChannelConstants.WRITEBUF, channelID, 0, count, 0, 0, 0, 0, buf, null);
+            count = 0;
+        }
+    }
+
+    /**
+     * Ensures there is room for <code>n</code> more bytes in the buffer.
+     *
+     * @param n  the number of bytes to be written (at most the buffer size)
+     */
+    private void reserve(int n) throws IOException {
+        if (count + n > buf.length) {
+            flushBuffer();
+        }
     }
 
     public void flush() throws IOException {
+        ensureOpen();
+        if (BUFFERED) {
+            flushBuffer();
+        }
         VM.execIO(ChannelConstants.FLUSH, channelID, 0, 0, 0, 0, 0, 0, null, null);
     }
 
     public void close() throws IOException {
-        VM.execIO(ChannelConstants.CLOSEOUTPUT, channelID, 0, 0, 0, 0, 0, 0, null, null);
-        channelID = -1;
-        parent.decrementCount();
+        if (channelID != -1) {
+            if (BUFFERED) {
+                flushBuffer();
+            }
+            VM.execIO(ChannelConstants.CLOSEOUTPUT, channelID, 0, 0, 0, 0, 0, 0, null, null);
+            channelID = -1;
+            parent.decrementCount();
+        }
     }
 
     public void write(int v) throws IOException {
+        ensureOpen();
+        if (BUFFERED) {
+            reserve(1);
+            buf[count++] = (byte)v;
+            return;
+        }
         VM.execIO(ChannelConstants.WRITEBYTE, channelID, v, 0, 0, 0, 0, 0, null, null);
     }
 
     public void writeShort(int v) throws IOException {
+        ensureOpen();
+        if (BUFFERED) {
+            reserve(2);
+            buf[count++] = (byte)(v >>> 8);
+            buf[count++] = (byte)v;
+            return;
+        }
         VM.execIO(ChannelConstants.WRITESHORT, channelID, v, 0, 0, 0, 0, 0, null, null);
     }
 
@@ -49,10 +129,25 @@ public class ChannelOutputStream extends OutputStream {
     }
 
     public void writeInt(int v) throws IOException {
+        ensureOpen();
+        if (BUFFERED) {
+            reserve(4);
+            buf[count++] = (byte)(v >>> 24);
+            buf[count++] = (byte)(v >>> 16);
+            buf[count++] = (byte)(v >>> 8);
+            buf[count++] = (byte)v;
+            return;
+        }
         VM.execIO(ChannelConstants.WRITEINT, channelID, v, 0, 0, 0, 0, 0, null, null);
     }
 
     public void writeLong(long v) throws IOException {
+        ensureOpen();
+        if (BUFFERED) {
+            writeInt((int)(v >>> 32));
+            writeInt((int)v);
+            return;
+        }
         VM.execIO(ChannelConstants.WRITELONG, channelID, (int)(v >>> 32), (int)v, 0, 0, 0, 0, null, null);
     }
 
@@ -60,6 +155,21 @@ public class ChannelOutputStream extends OutputStream {
         if (b == null) {
             throw new NullPointerException();
         }
+        ensureOpen();
+        if (BUFFERED) {
+            if (off < 0 || len < 0 || off + len > b.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (len >= buf.length) {
+                flushBuffer();
+                VM.execIO(ChannelConstants.WRITEBUF, channelID, off, len, 0, 0, 0, 0, b, null);
+                return;
+            }
+            reserve(len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+            return;
+        }
         VM.execIO(ChannelConstants.WRITEBUF, channelID, off, len, 0, 0, 0, 0, b, null);
     }
 
@@ -213,11 +213,7 @@ public class Protocol extends ConnectionBase implements StreamConnection, Stream
      */
     public InputStream openInputStream() throws IOException {
         useCount++;
-        InputStream is = new ChannelInputStream(this);
-/*if[BUFFERCHANNELINPUT]*/
-        is = new BufferedInputStream(is);
-/*end[BUFFERCHANNELINPUT]*/
-        return is;
+        return new ChannelInputStream(this);
     }
 
     /**
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2006 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ * This is a part of the Squawk JVM.
+ */
+
+package com.sun.squawk.io.mailboxes;
+
+import com.sun.squawk.util.Assert;
+
+/**
+ * A ByteArrayTransferEnvelope passes a byte array to a Mailbox by handing the array itself
+ * over to the receiving isolate instead of copying it.
+ *
+ * Sending the envelope transfers ownership of the array: the envelope given to
+ * MailboxAddress.send() no longer refers to the array, and can not be sent again.
+ * The sender must not read or write the array (or keep any other reference to it) after
+ * it has been sent, as it is then an object of the receiving isolate. If the sender needs
+ * to keep using the data, a ByteArrayEnvelope should be used instead.
+ *
+ * Large buffers can be recycled by the receiver using an {@link EnvelopeBufferPool}, or by
+ * transferring them back to the sender in a reply.
+ */
+public class ByteArrayTransferEnvelope extends Envelope {
+    private byte[] contents;
+    private int offset;
+    private int len;
+
+    /**
+     * Create a ByteArrayTransferEnvelope for the subsection of the specified array.
+     * The whole array is transferred.
+     *
+     * @param array the array of bytes to be transferred.
+     * @param offset offset to the first byte of data in the array.
+     * @param len the number of bytes of data in the array.
+     */
+    public ByteArrayTransferEnvelope(byte[] array, int offset, int len) {
+        Assert.that((offset >= 0) && (len >= 0) && (offset + len <= array.length));
+        this.contents = array;
+        this.offset = offset;
+        this.len = len;
+    }
+
+    /**
+     * Create a ByteArrayTransferEnvelope for the specified array.
+     *
+     * @param array the array of bytes to be transferred.
+     */
+    public ByteArrayTransferEnvelope(byte[] array) {
+        this(array, 0, array.length);
+    }
+
+    /**
+     * Return the contents of the envelope.
+     */
+    public Object getContents() {
+        checkCallContext();
+        return contents;
+    }
+
+    /**
+     * Return the contents of the envelope, which is the transferred byte array.
+     * Unlike a ByteArrayEnvelope, the data may start at a non-zero offset in the array.
+     *
+     * @see #getOffset
+     * @see #getLength
+     */
+    public byte[] getData() {
+        checkCallContext();
+        return contents;
+    }
+
+    /**
+     * Return the offset of the first byte of data in the transferred array.
+     */
+    public int getOffset() {
+        checkCallContext();
+        return offset;
+    }
+
+    /**
+     * Return the number of bytes of data in the transferred array.
+     */
+    public int getLength() {
+        checkCallContext();
+        return len;
+    }
+
+    /**
+     * Create a copy of this envelope that takes the array from this envelope.
+     *
+     * @return a copy
+     * @throws IllegalStateException if the array has already been transferred
+     */
+    Envelope copy() {
+        if (contents == null) {
+            throw new IllegalStateException("Envelope contents have already been transferred.");
+        }
+        ByteArrayTransferEnvelope theCopy = (ByteArrayTransferEnvelope)super.copy();
+        contents = null;
+        return theCopy;
+    }
+
+}
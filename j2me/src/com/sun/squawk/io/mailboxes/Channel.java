@@ -64,6 +64,41 @@ public class Channel {
         return inBox.receive();
     }
     
+    /**
+     * Wait at most <code>timeout</code> milliseconds for an envelope sent to this channel.
+     *
+     * @param timeout the maximum time to wait in milliseconds, or 0 to wait forever
+     * @return an Envelope containing the sent message, or null if the timeout expired.
+     * @throws AddressClosedException if the connection to this mailbox is closed.
+     * @throws MailboxClosedException if the Channel itself is closed.
+     */
+    public Envelope receive(long timeout) throws AddressClosedException, MailboxClosedException {
+        return inBox.receive(timeout);
+    }
+    
+    /**
+     * Return an envelope sent to this channel if there is one, without blocking.
+     *
+     * @return an Envelope containing the sent message, or null if there are no messages waiting.
+     * @throws AddressClosedException if the connection to this mailbox is closed.
+     * @throws MailboxClosedException if the Channel itself is closed.
+     */
+    public Envelope tryReceive() throws AddressClosedException, MailboxClosedException {
+        return inBox.tryReceive();
+    }
+    
+    /**
+     * Remove the envelopes waiting on this channel without blocking. See {@link Mailbox#drainTo}.
+     *
+     * @param envs the array to store the messages in
+     * @return the number of messages stored in <code>envs</code>
+     * @throws AddressClosedException if the connection to this mailbox is closed.
+     * @throws MailboxClosedException if the Channel itself is closed.
+     */
+    public int drainTo(Envelope[] envs) throws AddressClosedException, MailboxClosedException {
+        return inBox.drainTo(envs);
+    }
+    
     /**
      * Closes the Channel at both ends asynchronously.
      */
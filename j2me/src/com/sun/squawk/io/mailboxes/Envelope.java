@@ -21,6 +21,8 @@ import com.sun.squawk.util.Assert;
  * that the message was sent to and the MailBoxAddress that should be used for replies.
  *
  * The system defines several kinds of envelopes, including ObjectEnvelopes and ByteArrayEnvelopes.
+ * ByteArrayTransferEnvelopes pass large byte arrays without copying them, by transferring
+ * ownership of the array to the receiver.
  *
  * Note that the conntents of the envelope should only be looked at by the receiver, or
  * inter-isolate pointers could be created. The getContents() method enforces this.
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2006 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ * This is a part of the Squawk JVM.
+ */
+
+package com.sun.squawk.io.mailboxes;
+
+/**
+ * An EnvelopeBufferPool keeps byte arrays that are no longer in use so that they can be reused
+ * for later messages instead of allocating a new array for each one. This is useful for
+ * applications that repeatedly send large buffers of the same size in ByteArrayTransferEnvelopes.
+ *
+ * A pool must only be used by one isolate, or inter-isolate pointers would be created. An isolate that
+ * receives buffers in ByteArrayTransferEnvelopes owns them, and can release them into its own pool
+ * or transfer them back to the sender to be released into the sender's pool.
+ *
+ * This class is not thread-safe. Threads sharing a pool must synchronize on it.
+ */
+public class EnvelopeBufferPool {
+
+    /**
+     * The free buffers.
+     */
+    private final byte[][] buffers;
+
+    /**
+     * The number of entries in <code>buffers</code> that are in use.
+     */
+    private int count;
+
+    /**
+     * Create a pool that will hold at most <code>capacity</code> free buffers.
+     *
+     * @param capacity the maximum number of free buffers kept
+     */
+    public EnvelopeBufferPool(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException();
+        }
+        buffers = new byte[capacity][];
+    }
+
+    /**
+     * Get a buffer of exactly <code>size</code> bytes, reusing a free buffer if there is one.
+     * The contents of a reused buffer are not cleared.
+     *
+     * @param size the length of the buffer
+     * @return a buffer of <code>size</code> bytes
+     */
+    public byte[] allocate(int size) {
+        for (int i = count - 1; i >= 0; i--) {
+            byte[] buffer = buffers[i];
+            if (buffer.length == size) {
+                buffers[i] = buffers[--count];
+                buffers[count] = null;
+                return buffer;
+            }
+        }
+        return new byte[size];
+    }
+
+    /**
+     * Return a buffer to the pool. The caller must not use the buffer afterwards.
+     * If the pool is full, the buffer is left to the garbage collector.
+     *
+     * @param buffer the buffer that is no longer used
+     */
+    public void release(byte[] buffer) {
+        if (buffer != null && count < buffers.length) {
+            buffers[count++] = buffer;
+        }
+    }
+
+    /**
+     * Return the number of free buffers in the pool.
+     *
+     * @return the number of free buffers
+     */
+    public int getFreeCount() {
+        return count;
+    }
+}
@@ -32,6 +32,9 @@ import com.sun.squawk.util.SimpleLinkedList;
  *
  * The MailboxHandler is also responisble for handling MailboxAddress closed events. It May track the event, and cleanup other state, or it may indicate that
  * that an AddressClosedException should be thrown once all previous sent envelopes have been received.
+ *
+ * Besides the blocking receive(), messages can be polled with tryReceive(), waited for with a timeout, or taken
+ * in batches with drainTo(). A single thread can wait for messages on several Mailboxes using a {@link MailboxSelector}.
  */
 public final class Mailbox {
     
@@ -47,6 +50,11 @@ public final class Mailbox {
     
     private SimpleLinkedList inbox;
     
+    /**
+     * The selector this mailbox is registered with, or null.
+     */
+    private MailboxSelector selector;
+    
     private static int anonCounter = 0;
     
     /**
@@ -107,6 +115,9 @@ public final class Mailbox {
         synchronized (inbox) {
             inbox.notifyAll();
         }
+        if (selector != null) {
+            selector.wakeup();
+        }
         
         owner.forgetMailbox(this);
         
@@ -221,44 +232,170 @@ public final class Mailbox {
      * @throws AddressClosedException if the MailboxHandler for this mailbox is setup to throw an exception when the client
      *         closes its connection to this mailbox (a DefaultClientHandler, for example).
      * @throws MailboxClosedException if the Mailbox itself is closed.
-     *
-     * @todo Make debug code optional
      */
     public Envelope receive() throws AddressClosedException, MailboxClosedException {
-        if (Isolate.currentIsolate() != owner) {
-            throw new IllegalStateException("Attempted receive() on " + this + " by " + Isolate.currentIsolate());
+        return receive(true, 0);
+    }
+    
+    /**
+     * Blocks waiting for messages for at most <code>timeout</code> milliseconds.
+     * Closed logical connections are handled as in {@link #receive()}.
+     *
+     * @param timeout the maximum time to wait in milliseconds, or 0 to wait forever
+     * @return an Envelope containing the sent message, or null if the timeout expired.
+     * @throws AddressClosedException if the MailboxHandler for this mailbox is setup to throw an exception when the client
+     *         closes its connection to this mailbox.
+     * @throws MailboxClosedException if the Mailbox itself is closed.
+     * @throws IllegalArgumentException if <code>timeout</code> is negative
+     */
+    public Envelope receive(long timeout) throws AddressClosedException, MailboxClosedException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException();
+        }
+        return receive(true, timeout);
+    }
+    
+    /**
+     * Returns the next message if there is one, without blocking.
+     * Closed logical connections are handled as in {@link #receive()}.
+     *
+     * @return an Envelope containing the sent message, or null if there are no messages waiting.
+     * @throws AddressClosedException if the MailboxHandler for this mailbox is setup to throw an exception when the client
+     *         closes its connection to this mailbox.
+     * @throws MailboxClosedException if the Mailbox itself is closed.
+     */
+    public Envelope tryReceive() throws AddressClosedException, MailboxClosedException {
+        return receive(false, 0);
+    }
+    
+    /**
+     * Removes the messages that are waiting (up to <code>envs.length</code> of them) and stores them in
+     * <code>envs</code> in the order received, without blocking. This takes the inbox lock once for
+     * the whole batch instead of once per message.
+     *
+     * A closed logical connection ends the batch. If the MailboxHandler asks for an AddressClosedException to be thrown,
+     * it is thrown by this call if no messages were taken, otherwise by the next call.
+     *
+     * @param envs the array to store the messages in
+     * @return the number of messages stored in <code>envs</code>
+     * @throws AddressClosedException if the MailboxHandler for this mailbox is setup to throw an exception when the client
+     *         closes its connection to this mailbox.
+     * @throws MailboxClosedException if the Mailbox itself is closed and there are no messages waiting.
+     */
+    public int drainTo(Envelope[] envs) throws AddressClosedException, MailboxClosedException {
+        checkOwner("drainTo()");
+        
+        int n = 0;
+        synchronized (inbox) {
+            while (n < envs.length && inbox.size() != 0) {
+                Envelope env = (Envelope)inbox.removeLast();
+                
+                if (env instanceof MailboxAddress.AddressClosedEnvelope) {
+                    if (n != 0) {
+                        // deliver the messages taken so far, and report the close on the next call:
+                        inbox.addLast(env);
+                        return n;
+                    }
+                    AddressClosedException e = handler.handleClose(env.getReplyAddress());
+                    if (e != null) {
+                        throw e;
+                    }
+                } else {
+                    envs[n++] = env;
+                }
+            }
+            if (n == 0 && closed) {
+                throw new MailboxClosedException(this);
+            }
         }
+        return n;
+    }
+    
+    /**
+     * Implementation of the receive methods.
+     *
+     * @param block true if the caller waits for a message
+     * @param timeout the maximum time to wait in milliseconds, or 0 to wait forever
+     * @return the next message, or null if there is none and <code>block</code> is false or the timeout expired.
+     */
+    private Envelope receive(boolean block, long timeout) throws AddressClosedException, MailboxClosedException {
+        checkOwner("receive()");
         
-        Envelope env = null;
+        long deadline = (timeout == 0) ? 0 : System.currentTimeMillis() + timeout;
         synchronized (inbox) {
-            while (env == null) {
+            while (true) {
                 while (inbox.size() == 0) {
                     if (closed) {
                         throw new MailboxClosedException(this);
                     }
+                    if (!block) {
+                        return null;
+                    }
                     
+                    long delay = 0;
+                    if (deadline != 0) {
+                        delay = deadline - System.currentTimeMillis();
+                        if (delay <= 0) {
+                            return null;
+                        }
+                    }
                     try {
-                        inbox.wait();
+                        inbox.wait(delay);
                     } catch (InterruptedException e) {
                     }
                 }
-                env = (Envelope)inbox.removeLast();
-                
-                MailboxAddress replyTo = env.getReplyAddress();
+                Envelope env = (Envelope)inbox.removeLast();
                 
                 // handle closed MailboxAddresses:
                 if (env instanceof MailboxAddress.AddressClosedEnvelope) {
-                    AddressClosedException e = handler.handleClose(replyTo);
+                    AddressClosedException e = handler.handleClose(env.getReplyAddress());
                     if (e != null) {
                         throw e;
-                    } else {
-                        env = null; // repeat outer while loop.
                     }
+                    // otherwise look for the next message.
+                } else {
+                    return env;
                 }
             }
         }
-        
-        return env;
+    }
+    
+    /**
+     * Throws an IllegalStateException if the current isolate does not own this mailbox.
+     *
+     * @param op the name of the attempted operation
+     */
+    private void checkOwner(String op) {
+        if (Isolate.currentIsolate() != owner) {
+            throw new IllegalStateException("Attempted " + op + " on " + this + " by " + Isolate.currentIsolate());
+        }
+    }
+    
+    /**
+     * [package-private]
+     * Returns true if a receive on this mailbox would not block, either because there is a message
+     * waiting or because the mailbox is closed.
+     */
+    boolean isReady() {
+        synchronized (inbox) {
+            return closed || inbox.size() != 0;
+        }
+    }
+    
+    /**
+     * [package-private]
+     * Sets the selector that is woken up when a message arrives or the mailbox is closed.
+     *
+     * @param selector the selector, or null
+     * @throws IllegalStateException if the mailbox is already registered with another selector
+     */
+    void setSelector(MailboxSelector selector) {
+        synchronized (inbox) {
+            if (selector != null && this.selector != null && this.selector != selector) {
+                throw new IllegalStateException(this + " is already registered with a selector");
+            }
+            this.selector = selector;
+        }
     }
 
     /** 
@@ -267,15 +404,23 @@ public final class Mailbox {
      * in the context of the sending Isolate.
      */
     void handleMessage(Envelope env) throws AddressClosedException {
+        MailboxSelector sel;
         synchronized (env) {
             synchronized (inbox) {
                 inbox.addFirst(env.copy());
 
-                // notify any thread (in the receiving isolate) that another
-                // message has been deposited in its inbox
-                inbox.notifyAll();
+                // notify a thread (in the receiving isolate) that another
+                // message has been deposited in its inbox. One message can only
+                // satisfy one receiver, so there is no need to wake them all.
+                inbox.notify();
+                sel = selector;
             }
         }
+        
+        // wake the selector outside of the inbox lock, as the selector checks inboxes while holding its own lock.
+        if (sel != null) {
+            sel.wakeup();
+        }
     }
     
     /**
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2006 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ * This is a part of the Squawk JVM.
+ */
+
+package com.sun.squawk.io.mailboxes;
+
+import com.sun.squawk.Isolate;
+
+/**
+ * A MailboxSelector lets one thread wait for messages on any number of Mailboxes, Channels and ServerChannels,
+ * instead of having a thread blocked in receive() (or accept()) for each of them.
+ *
+ * The sources are registered with the selector, and select() returns a registered source that is ready:
+ * <ul>
+ *   <li>a Mailbox or Channel is ready when receive() would not block, because there is a message waiting or the
+ *       mailbox has been closed.</li>
+ *   <li>a ServerChannel is ready when a client is waiting to be accepted.</li>
+ * </ul>
+ * Ready sources are returned in round-robin order so that a busy source can not starve the others. A closed Mailbox
+ * or Channel stays ready, so it should be unregistered once its closed exception has been seen.
+ *
+ * A source can be registered with only one selector at a time, and only by the isolate that owns it.
+ * A selector should only be used by one thread at a time.
+ * <p>
+ * A typical server loop looks like:
+ * <pre>
+ *     MailboxSelector selector = new MailboxSelector();
+ *     selector.register(serverChannel);
+ *     while (true) {
+ *         Object source = selector.select();
+ *         if (source == serverChannel) {
+ *             selector.register(serverChannel.accept());
+ *         } else {
+ *             Channel channel = (Channel)source;
+ *             try {
+ *                 handle(channel.receive());
+ *             } catch (IOException e) {
+ *                 selector.unregister(channel);
+ *                 channel.close();
+ *             }
+ *         }
+ *     }
+ * </pre>
+ */
+public final class MailboxSelector {
+
+    /**
+     * The registered Mailboxes, Channels and ServerChannels.
+     */
+    private Object[] sources = new Object[4];
+
+    /**
+     * The number of registered sources.
+     */
+    private int count;
+
+    /**
+     * The index of the source to check first in the next select.
+     */
+    private int next;
+
+    /**
+     * Create an empty selector.
+     */
+    public MailboxSelector() {
+    }
+
+    /**
+     * Register a Mailbox with this selector.
+     *
+     * @param box the mailbox
+     * @throws IllegalStateException if the mailbox is not owned by the current isolate or is registered with another selector
+     */
+    public void register(Mailbox box) {
+        checkOwner(box);
+        add(box, box);
+    }
+
+    /**
+     * Register a Channel with this selector.
+     *
+     * @param channel the channel
+     * @throws IllegalStateException if the channel is not owned by the current isolate or is registered with another selector
+     */
+    public void register(Channel channel) {
+        checkOwner(channel.inBox);
+        add(channel, channel.inBox);
+    }
+
+    /**
+     * Register a ServerChannel with this selector.
+     *
+     * @param server the server channel
+     * @throws IllegalStateException if the server channel is not owned by the current isolate or is registered with another selector
+     */
+    public void register(ServerChannel server) {
+        checkOwner(server.getServerMailbox());
+        synchronized (this) {
+            if (indexOf(server) < 0) {
+                server.setSelector(this);
+                append(server);
+            }
+        }
+    }
+
+    /**
+     * Unregister a Mailbox, Channel or ServerChannel from this selector. Sources that are not registered are ignored.
+     *
+     * @param source the source to unregister
+     */
+    public synchronized void unregister(Object source) {
+        int index = indexOf(source);
+        if (index < 0) {
+            return;
+        }
+
+        if (source instanceof Mailbox) {
+            ((Mailbox)source).setSelector(null);
+        } else if (source instanceof Channel) {
+            ((Channel)source).inBox.setSelector(null);
+        } else {
+            ((ServerChannel)source).setSelector(null);
+        }
+
+        count--;
+        System.arraycopy(sources, index + 1, sources, index, count - index);
+        sources[count] = null;
+        if (next > index) {
+            next--;
+        }
+    }
+
+    /**
+     * Return the number of registered sources.
+     *
+     * @return the number of registered sources
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Wait until a registered source is ready.
+     *
+     * @return the Mailbox, Channel or ServerChannel that is ready
+     */
+    public Object select() {
+        return select(true, 0);
+    }
+
+    /**
+     * Wait at most <code>timeout</code> milliseconds for a registered source to be ready.
+     *
+     * @param timeout the maximum time to wait in milliseconds, or 0 to wait forever
+     * @return the Mailbox, Channel or ServerChannel that is ready, or null if the timeout expired
+     * @throws IllegalArgumentException if <code>timeout</code> is negative
+     */
+    public Object select(long timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException();
+        }
+        return select(true, timeout);
+    }
+
+    /**
+     * Return a registered source that is ready, without blocking.
+     *
+     * @return the Mailbox, Channel or ServerChannel that is ready, or null if none is
+     */
+    public Object selectNow() {
+        return select(false, 0);
+    }
+
+    /**
+     * Implementation of the select methods.
+     */
+    private synchronized Object select(boolean block, long timeout) {
+        long deadline = (timeout == 0) ? 0 : System.currentTimeMillis() + timeout;
+        while (true) {
+            for (int i = 0; i < count; i++) {
+                int index = (next + i) % count;
+                Object source = sources[index];
+                if (isReady(source)) {
+                    next = index + 1;
+                    return source;
+                }
+            }
+            if (!block) {
+                return null;
+            }
+
+            long delay = 0;
+            if (deadline != 0) {
+                delay = deadline - System.currentTimeMillis();
+                if (delay <= 0) {
+                    return null;
+                }
+            }
+            try {
+                wait(delay);
+            } catch (InterruptedException e) {
+            }
+        }
+    }
+
+    /**
+     * [package-private]
+     * Called when a registered source may have become ready. This may be called in the context of
+     * the isolate that sent a message, so it must not hold the lock of the source.
+     */
+    synchronized void wakeup() {
+        notifyAll();
+    }
+
+    /**
+     * Returns true if a source is ready.
+     */
+    private static boolean isReady(Object source) {
+        if (source instanceof Mailbox) {
+            return ((Mailbox)source).isReady();
+        } else if (source instanceof Channel) {
+            return ((Channel)source).inBox.isReady();
+        } else {
+            return ((ServerChannel)source).isReady();
+        }
+    }
+
+    /**
+     * Register a Mailbox or Channel.
+     *
+     * @param source the object returned by select()
+     * @param box the mailbox that the source receives on
+     */
+    private synchronized void add(Object source, Mailbox box) {
+        if (indexOf(source) < 0) {
+            box.setSelector(this);
+            append(source);
+        }
+    }
+
+    /**
+     * Add a source to the array of sources, growing it if necessary.
+     */
+    private void append(Object source) {
+        if (count == sources.length) {
+            Object[] newSources = new Object[count * 2];
+            System.arraycopy(sources, 0, newSources, 0, count);
+            sources = newSources;
+        }
+        sources[count++] = source;
+    }
+
+    /**
+     * Return the index of a registered source, or -1.
+     */
+    private int indexOf(Object source) {
+        for (int i = 0; i < count; i++) {
+            if (sources[i] == source) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Throws an IllegalStateException if the current isolate does not own the mailbox.
+     */
+    private static void checkOwner(Mailbox box) {
+        if (box.getOwner() != Isolate.currentIsolate()) {
+            throw new IllegalStateException("Attempted to select on " + box + " by " + Isolate.currentIsolate());
+        }
+    }
+}
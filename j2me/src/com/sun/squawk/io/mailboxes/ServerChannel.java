@@ -18,7 +18,8 @@ import com.sun.squawk.util.SimpleLinkedList;
  * can use a port umber to accept a number of client connections.
  * 
  * A server can use a the <code>accept</code> method to accept new client connections, which will return a new Channel
- * that the server can use to talk to the client. A server may choose to service each Channel in a seperate thread.
+ * that the server can use to talk to the client. A server may choose to service each Channel in a seperate thread,
+ * or service the ServerChannel and all of its Channels in one thread using a {@link MailboxSelector}.
  *
  */
 public class ServerChannel {
@@ -33,6 +34,11 @@ public class ServerChannel {
      */
     private SimpleLinkedList unacceptedChannels;
     
+    /**
+     * The selector this ServerChannel is registered with, or null.
+     */
+    private MailboxSelector selector;
+    
     /**
      * Creates a new instance of ServerChannel
      */
@@ -66,9 +72,14 @@ public class ServerChannel {
                 Channel newChannel = new Channel(replyAddress, channelInBox);
                 
                 SimpleLinkedList unacceptedChannels = server.unacceptedChannels;
+                MailboxSelector sel;
                 synchronized (unacceptedChannels) {
                     unacceptedChannels.addFirst(newChannel);
                     unacceptedChannels.notifyAll();
+                    sel = server.selector;
+                }
+                if (sel != null) {
+                    sel.wakeup();
                 }
                 
                 return channeInboxAddress;
@@ -105,6 +116,54 @@ public class ServerChannel {
         }
     }
     
+    /**
+     * Return a client connection if one is waiting to be accepted, without blocking.
+     *
+     * @return a new Channel to the client, or null
+     */
+    public Channel tryAccept() {
+        synchronized (unacceptedChannels) {
+            if (unacceptedChannels.size() == 0) {
+                return null;
+            }
+            return (Channel)unacceptedChannels.removeLast();
+        }
+    }
+    
+    /**
+     * [package-private]
+     * Returns true if accept() would not block.
+     */
+    boolean isReady() {
+        synchronized (unacceptedChannels) {
+            return unacceptedChannels.size() != 0;
+        }
+    }
+    
+    /**
+     * [package-private]
+     * Sets the selector that is woken up when a client connects.
+     *
+     * @param selector the selector, or null
+     * @throws IllegalStateException if this ServerChannel is already registered with another selector
+     */
+    void setSelector(MailboxSelector selector) {
+        synchronized (unacceptedChannels) {
+            if (selector != null && this.selector != null && this.selector != selector) {
+                throw new IllegalStateException(this + " is already registered with a selector");
+            }
+            this.selector = selector;
+        }
+    }
+    
+    /**
+     * [package-private]
+     * Return the named mailbox that clients will initially talk to.
+     */
+    Mailbox getServerMailbox() {
+        return serverBox;
+    }
+    
     /**
      * Unregisters this ServerChannel and it's MailBox.
      * Should this close existing Channels that came from this channel?
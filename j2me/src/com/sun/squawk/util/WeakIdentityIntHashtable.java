@@ -0,0 +1,299 @@
+/*
+ * Copyright 2006 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ * This is a part of the Squawk JVM.
+ */
+
+package com.sun.squawk.util;
+
+import java.lang.ref.WeakReference;
+
+import com.sun.squawk.GC;
+
+/**
+ * A WeakIdentityIntHashtable maps non-zero int keys to objects and objects back to their keys,
+ * without preventing the objects from being garbage collected. Objects are compared using
+ * reference equality and are hashed by their identity hash code, so both directions of lookup
+ * take constant time.
+ * <p>
+ * Each entry is a weak reference that is cleared by the collector when its object becomes
+ * unreachable. Cleared entries are only searched for when the collector reports that it has
+ * cleared weak references since the last search (see {@link GC#getClearedWeakReferenceCount}),
+ * so a table whose objects are all live is never scanned.
+ * <p>
+ * Hashing by identity has a cost in memory. An object in RAM has no room in its header for a
+ * hash code, so the first call to {@link System#identityHashCode} on it attaches an
+ * <code>ObjectAssociation</code> that holds the hash code. That costs five words (20 bytes on
+ * a 32 bit VM) per object, on top of the entry in this table. The association stays until the
+ * object is collected, even after its entry is removed. Objects in ROM or NVM are hashed by
+ * address and are not affected.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class WeakIdentityIntHashtable {
+
+    /**
+     * An entry in the table. It is linked into a chain of entries with the same key hash
+     * and a chain of entries with the same object hash.
+     */
+    private static final class Entry extends WeakReference {
+        final int key;
+        final int hash;
+        Entry nextByKey;
+        Entry nextByValue;
+
+        Entry(int key, Object value, int hash) {
+            super(value);
+            this.key = key;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * The chains of entries indexed by key.
+     */
+    private Entry[] byKey;
+
+    /**
+     * The chains of entries indexed by the identity hash code of their object.
+     */
+    private Entry[] byValue;
+
+    /**
+     * The number of entries in the table, including those that have been cleared but not yet removed.
+     */
+    private int count;
+
+    /**
+     * The table is rehashed when <code>count</code> exceeds this value.
+     */
+    private int threshold;
+
+    /**
+     * The value of {@link GC#getClearedWeakReferenceCount} when cleared entries were last removed.
+     */
+    private int clearedCount;
+
+    /**
+     * Constructs a new, empty table.
+     *
+     * @param initialCapacity  the initial capacity of the table, rounded up to a power of two
+     */
+    public WeakIdentityIntHashtable(int initialCapacity) {
+        int capacity = 16;
+        while (capacity < initialCapacity) {
+            capacity <<= 1;
+        }
+        byKey = new Entry[capacity];
+        byValue = new Entry[capacity];
+        threshold = (capacity * 3) / 4;
+        clearedCount = GC.getClearedWeakReferenceCount();
+    }
+
+    /**
+     * Constructs a new, empty table with a default capacity.
+     */
+    public WeakIdentityIntHashtable() {
+        this(64);
+    }
+
+    /**
+     * Computes the hash used to index the chains of entries by object. For an object
+     * in RAM this attaches an <code>ObjectAssociation</code> to the object if it does not
+     * already have one.
+     */
+    private static int hashValue(Object value) {
+        int h = System.identityHashCode(value);
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the object mapped by a key.
+     *
+     * @param key  the key to search for
+     * @return the object mapped by <code>key</code>, or null if there is none or it has been garbage collected
+     */
+    public Object get(int key) {
+        for (Entry e = byKey[key & (byKey.length - 1)]; e != null; e = e.nextByKey) {
+            if (e.key == key) {
+                return e.get();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the key that maps an object. Objects are compared using reference equality.
+     *
+     * @param value  the object to search for
+     * @return the key of <code>value</code>, or 0 if it is not in the table
+     */
+    public int getKey(Object value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        int hash = hashValue(value);
+        for (Entry e = byValue[hash & (byValue.length - 1)]; e != null; e = e.nextByValue) {
+            if (e.hash == hash && e.get() == value) {
+                return e.key;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Maps a key to an object, replacing any object previously mapped by the key.
+     *
+     * @param key    the key, which must not be 0
+     * @param value  the object, which must not be null
+     * @return the object previously mapped by <code>key</code> or null
+     */
+    public Object put(int key, Object value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        if (key == 0) {
+            throw new IllegalArgumentException();
+        }
+        removeClearedEntries();
+        Object old = remove(key);
+        if (count >= threshold) {
+            rehash();
+        }
+
+        Entry entry = new Entry(key, value, hashValue(value));
+        int k = key & (byKey.length - 1);
+        entry.nextByKey = byKey[k];
+        byKey[k] = entry;
+        int v = entry.hash & (byValue.length - 1);
+        entry.nextByValue = byValue[v];
+        byValue[v] = entry;
+        count++;
+        return old;
+    }
+
+    /**
+     * Removes the mapping for a key.
+     *
+     * @param key  the key to remove
+     * @return the object that was mapped by <code>key</code>, or null
+     */
+    public Object remove(int key) {
+        int k = key & (byKey.length - 1);
+        Entry prev = null;
+        for (Entry e = byKey[k]; e != null; prev = e, e = e.nextByKey) {
+            if (e.key == key) {
+                if (prev == null) {
+                    byKey[k] = e.nextByKey;
+                } else {
+                    prev.nextByKey = e.nextByKey;
+                }
+                unlinkByValue(e);
+                count--;
+                Object value = e.get();
+                e.clear();
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes an entry from its chain of entries indexed by object.
+     */
+    private void unlinkByValue(Entry entry) {
+        int v = entry.hash & (byValue.length - 1);
+        Entry prev = null;
+        for (Entry e = byValue[v]; e != null; prev = e, e = e.nextByValue) {
+            if (e == entry) {
+                if (prev == null) {
+                    byValue[v] = e.nextByValue;
+                } else {
+                    prev.nextByValue = e.nextByValue;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries in the table. This includes the entries whose objects
+     * have been collected since the last call to {@link #put} or {@link #size}.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        removeClearedEntries();
+        return count;
+    }
+
+    /**
+     * Removes the entries whose objects have been collected, if the collector has cleared
+     * any weak references since this was last done.
+     */
+    public void removeClearedEntries() {
+        int cleared = GC.getClearedWeakReferenceCount();
+        if (cleared == clearedCount) {
+            return;
+        }
+        clearedCount = cleared;
+
+        for (int i = 0; i != byKey.length; i++) {
+            Entry prev = null;
+            for (Entry e = byKey[i]; e != null; e = e.nextByKey) {
+                if (e.get() == null) {
+                    if (prev == null) {
+                        byKey[i] = e.nextByKey;
+                    } else {
+                        prev.nextByKey = e.nextByKey;
+                    }
+                    count--;
+                } else {
+                    prev = e;
+                }
+            }
+        }
+        for (int i = 0; i != byValue.length; i++) {
+            Entry prev = null;
+            for (Entry e = byValue[i]; e != null; e = e.nextByValue) {
+                if (e.get() == null) {
+                    if (prev == null) {
+                        byValue[i] = e.nextByValue;
+                    } else {
+                        prev.nextByValue = e.nextByValue;
+                    }
+                } else {
+                    prev = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Doubles the capacity of the table.
+     */
+    private void rehash() {
+        Entry[] oldByKey = byKey;
+        int capacity = oldByKey.length * 2;
+        byKey = new Entry[capacity];
+        byValue = new Entry[capacity];
+        threshold = (capacity * 3) / 4;
+
+        for (int i = 0; i != oldByKey.length; i++) {
+            Entry e = oldByKey[i];
+            while (e != null) {
+                Entry next = e.nextByKey;
+                int k = e.key & (capacity - 1);
+                e.nextByKey = byKey[k];
+                byKey[k] = e;
+                int v = e.hash & (capacity - 1);
+                e.nextByValue = byValue[v];
+                byValue[v] = e;
+                e = next;
+            }
+        }
+    }
+}
@@ -141,6 +141,7 @@ public final class ChannelConstants {
         FILLARC                                 = 65,
         FILLPOLYGON                             = 66,
         REPAINT                                 = 67,
+        DRAWDISPLAYLIST                         = 68,
         /*
          * Internal codes used to execute C code on the service stack.
          */
@@ -178,6 +179,11 @@ public final class ChannelConstants {
         INTERNAL_RECEIVE_MESSAGE_FROM_CLIENT    = 1027,
         INTERNAL_SEARCH_SERVER_HANDLERS         = 1028,
 
+        /* Profiling Operations */
+
+        INTERNAL_PROFILE_SNAPSHOT               = 1029,
+        INTERNAL_PROFILE_RESET                  = 1030,
+
         DUMMY = 999;
 
     private static final String[] Mnemonics = {
@@ -248,7 +254,8 @@ public final class ChannelConstants {
         "FILLARC",                  // 64
         "FILLPOLYGON",              // 70
         "REPAINT",                  // 71
-        "GLOBAL_GETHIBERNATIONDATA" //72
+        "DRAWDISPLAYLIST",          // 72
+        "GLOBAL_GETHIBERNATIONDATA" //73
     };
 
     public static String getMnemonic(int op) {
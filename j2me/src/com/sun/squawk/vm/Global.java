@@ -47,6 +47,8 @@ public final class Global {
         , com_sun_squawk_GC$collecting                       = Int("com.sun.squawk.GC.collecting")
         , com_sun_squawk_GC$monitorExitCount                 = Int("com.sun.squawk.GC.monitorExitCount")
         , com_sun_squawk_GC$monitorReleaseCount              = Int("com.sun.squawk.GC.monitorReleaseCount")
+        , com_sun_squawk_GC$monitorInflationCount            = Int("com.sun.squawk.GC.monitorInflationCount")
+        , com_sun_squawk_GC$fastAllocationEnabled            = Int("com.sun.squawk.GC.fastAllocationEnabled")
 
         , com_sun_squawk_VMThread$nextThreadNumber             = Int("com.sun.squawk.VMThread.nextThreadNumber")
         , com_sun_squawk_VMThread$currentThread                = Oop("com.sun.squawk.VMThread.currentThread")
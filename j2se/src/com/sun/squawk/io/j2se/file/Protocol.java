@@ -64,6 +64,15 @@ public class Protocol extends ConnectionBase implements StreamConnection {
      *             The optional parameters are:
      *
      *             append:    Specifies if the file should be opened in append mode. Default is false.
+     *             position:  The offset in the file at which reading or writing starts. Default is 0.
+     *             length:    Sets the length of the file before writing, truncating or extending it.
+     *             sync:      Specifies if written data is forced to the storage device when the
+     *                        output stream is closed. Default is false.
+     *             lock:      Specifies if the output stream only holds an exclusive lock on the
+     *                        file, creating it if it does not exist, until the stream is closed.
+     *                        Opening fails if the lock is held by another connection in this or
+     *                        another process. The file should not be otherwise read or written.
+     *                        Default is false.
      */
     public Connection open(String protocol, String name, int mode, boolean timeouts) throws IOException {
 
@@ -73,9 +82,21 @@ public class Protocol extends ConnectionBase implements StreamConnection {
 
         class Parameters extends ParameterParser {
             boolean append;
+            long position = -1;
+            long length = -1;
+            boolean sync;
+            boolean lock;
             public boolean parameter(String key, String value) {
                 if (key.equals("append")) {
                     append = value.equals("true");
+                } else if (key.equals("position")) {
+                    position = Long.parseLong(value);
+                } else if (key.equals("length")) {
+                    length = Long.parseLong(value);
+                } else if (key.equals("sync")) {
+                    sync = value.equals("true");
+                } else if (key.equals("lock")) {
+                    lock = value.equals("true");
                 } else {
                     return false;
                 }
@@ -94,9 +115,23 @@ public class Protocol extends ConnectionBase implements StreamConnection {
                     fis = getListingFor(name);
                 } else {
                     fis = new FileInputStream(name);
+                    long skip = p.position;
+                    while (skip > 0) {
+                        long n = fis.skip(skip);
+                        if (n <= 0) {
+                            break;
+                        }
+                        skip -= n;
+                    }
                 }
             } else if (mode == Connector.WRITE) {
-                fos = new FileOutputStream(name, p.append);
+                if (p.lock) {
+                    fos = new LockOutputStream(name);
+                } else if (p.position != -1 || p.length != -1 || p.sync) {
+                    fos = new RandomAccessOutputStream(name, p.append, p.position, p.length, p.sync);
+                } else {
+                    fos = new FileOutputStream(name, p.append);
+                }
             } else {
                 throw new IllegalArgumentException("Bad mode");
             }
@@ -185,4 +220,117 @@ public class Protocol extends ConnectionBase implements StreamConnection {
     public void close() throws IOException {
     }
 
+    /**
+     * An output stream that writes to a file at a given position and that can
+     * set the length of the file and force the written data to the storage device.
+     */
+    static class RandomAccessOutputStream extends OutputStream {
+
+        /** The file written to */
+        private final java.io.RandomAccessFile file;
+
+        /** Specifies if the data is forced to the device when the stream is closed */
+        private final boolean sync;
+
+        /**
+         * Opens a file for writing.
+         *
+         * @param name      the name of the file
+         * @param append    specifies if writing starts at the end of the file when no position is given
+         * @param position  the offset at which writing starts or -1
+         * @param length    the new length of the file or -1 to leave it unchanged
+         * @param sync      specifies if the data is forced to the device when the stream is closed
+         */
+        RandomAccessOutputStream(String name, boolean append, long position, long length, boolean sync) throws IOException {
+            file = new java.io.RandomAccessFile(name, "rw");
+            this.sync = sync;
+            if (length != -1) {
+                file.setLength(length);
+            }
+            if (position != -1) {
+                file.seek(position);
+            } else if (append) {
+                file.seek(file.length());
+            } else if (length == -1) {
+                file.setLength(0);
+            }
+        }
+
+        public void write(int b) throws IOException {
+            file.write(b);
+        }
+
+        public void write(byte b[], int off, int len) throws IOException {
+            file.write(b, off, len);
+        }
+
+        public void close() throws IOException {
+            if (sync) {
+                file.getFD().sync();
+            }
+            file.close();
+        }
+    }
+
+    /**
+     * An output stream that holds an exclusive lock on a file until it is closed.
+     * Nothing can be written to it. On some hosts closing any connection to a file
+     * releases the locks held on it by the process, so a locked file should only
+     * be used as a lock and the locks held by this process are also recorded in
+     * <code>locked</code>.
+     */
+    static class LockOutputStream extends OutputStream {
+
+        /** The canonical names of the files locked by this process */
+        private static final Hashtable locked = new Hashtable();
+
+        /** The canonical name of the file locked */
+        private final String path;
+
+        /** The file locked */
+        private final java.io.RandomAccessFile file;
+
+        /** The lock, or null once released */
+        private java.nio.channels.FileLock lock;
+
+        /**
+         * Locks a file, creating it if it does not exist.
+         *
+         * @param name      the name of the file
+         * @throws IOException if the lock is held by another connection
+         */
+        LockOutputStream(String name) throws IOException {
+            path = new File(name).getCanonicalPath();
+            synchronized (locked) {
+                if (locked.containsKey(path)) {
+                    throw new IOException("file is locked: " + name);
+                }
+                file = new java.io.RandomAccessFile(path, "rw");
+                try {
+                    lock = file.getChannel().tryLock();
+                } catch (java.nio.channels.OverlappingFileLockException e) {
+                    // locked through another API in this process
+                }
+                if (lock == null) {
+                    file.close();
+                    throw new IOException("file is locked: " + name);
+                }
+                locked.put(path, path);
+            }
+        }
+
+        public void write(int b) throws IOException {
+            throw new IOException("cannot write to a lock");
+        }
+
+        public void close() throws IOException {
+            synchronized (locked) {
+                if (lock != null) {
+                    lock = null;
+                    locked.remove(path);
+                    file.close(); // releases the lock
+                }
+            }
+        }
+    }
 }
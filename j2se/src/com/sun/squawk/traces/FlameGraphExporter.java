@@ -0,0 +1,308 @@
+/*
+ * Copyright 2006 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ * This is a part of the Squawk JVM.
+ */
+package com.sun.squawk.traces;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * The FlameGraphExporter converts a Squawk execution profile to the collapsed stack format
+ * read by flame graph tools. Each line of the output is a call stack, with the frames separated
+ * by ';' from the outer most to the inner most, followed by a space and the number of samples
+ * taken with that stack.
+ * <p>
+ * The input can be either the call tree written by a profiling VM run with the
+ * <code>-Xproftree:&lt;file&gt;</code> option (or a snapshot of it written by
+ * <code>VM.snapshotProfile()</code>), or a trace file containing the profile stack traces
+ * written with the <code>-Xprof:&lt;n&gt;</code> option alone, which is what the
+ * {@link ProfileViewer} reads. Unlike the ProfileViewer, this tool needs no GUI.
+ */
+public class FlameGraphExporter {
+
+    /**
+     * Pattern for matching the line that starts an aggregated profile call tree.
+     * Capturing group 1 is the number of samples and group 2 is the number of dropped samples.
+     */
+    public static Pattern PROFILE_TREE = Pattern.compile("\\*PROFILETREE\\*:(\\d+):(\\d+)");
+
+    /**
+     * Pattern for matching a node in an aggregated profile call tree. Capturing group 1 is
+     * the index of the node, group 2 is the index of its parent (or -1), group 3 is the method address,
+     * group 4 is the bytecode offset and group 5 is the number of samples whose inner most frame is the node.
+     */
+    public static Pattern PROFILE_NODE = Pattern.compile("\\*PROFILENODE\\*:(\\d+):(-?\\d+):(\\d+):(\\d+):(\\d+)");
+
+    /**
+     * The map from addresses to symbolic information.
+     */
+    private final Symbols symbols = new Symbols();
+
+    /**
+     * Specifies if frames include the source line number.
+     */
+    private boolean lineNumbers;
+
+    /**
+     * The number of samples for each collapsed stack.
+     */
+    private final TreeMap stacks = new TreeMap();
+
+    /**
+     * Gets the name of a frame in a collapsed stack.
+     *
+     * @param methodAddress  the address of the frame's method
+     * @param pc             the bytecode offset of the frame as recorded by the VM
+     * @return the frame name
+     */
+    private String frameName(long methodAddress, int pc) {
+        Symbols.Method method;
+        try {
+            method = symbols.lookupMethod(methodAddress);
+        } catch (Symbols.UnknownMethodException e) {
+            return "method@" + methodAddress;
+        }
+
+        // The bytecode offset is of the instruction that will be executed next in the method
+        // so use the previous one (as ProfileViewer does).
+        if (pc != 0) {
+            pc = pc - 1;
+        }
+        if (lineNumbers) {
+            return method.toString(pc);
+        }
+        return method.getName(true);
+    }
+
+    /**
+     * Adds samples to a collapsed stack.
+     *
+     * @param stack    the collapsed stack
+     * @param samples  the number of samples to add
+     */
+    private void addSamples(String stack, long samples) {
+        long[] count = (long[])stacks.get(stack);
+        if (count == null) {
+            count = new long[1];
+            stacks.put(stack, count);
+        }
+        count[0] += samples;
+    }
+
+    /**
+     * Reads an aggregated profile call tree. The nodes appear after their parents.
+     *
+     * @param in  the input file positioned after the *PROFILETREE* line
+     * @return the number of samples read
+     */
+    private long readTree(InputFile in) {
+        Vector paths = new Vector();
+        long count = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            Matcher m = PROFILE_NODE.matcher(line);
+            if (!m.matches()) {
+                System.err.println("warning: " + in.formatErrorMessage("parse error of profile node"));
+                break;
+            }
+            int index = Integer.parseInt(m.group(1));
+            int parent = Integer.parseInt(m.group(2));
+            String frame = frameName(Long.parseLong(m.group(3)), Integer.parseInt(m.group(4)));
+            long samples = Long.parseLong(m.group(5));
+
+            if (index != paths.size() || parent >= index) {
+                throw in.error("profile nodes are not in order", null);
+            }
+            String path = parent == -1 ? frame : (String)paths.elementAt(parent) + ';' + frame;
+            paths.addElement(path);
+            if (samples != 0) {
+                addSamples(path, samples);
+                count += samples;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads the profile stack traces from a trace file.
+     *
+     * @param in  the input file positioned after the first line
+     * @return the number of samples read
+     */
+    private long readStackTraces(InputFile in) {
+        Vector frames = new Vector();
+        long count = 0;
+        boolean inSample = false;
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!inSample) {
+                inSample = ProfileViewer.STACK_TRACE_START.matcher(line).matches();
+                continue;
+            }
+
+            Matcher m = ProfileViewer.STACK_TRACE_ELEMENT.matcher(line);
+            if (m.matches()) {
+                frames.addElement(frameName(Long.parseLong(m.group(1)), Integer.parseInt(m.group(2))));
+            } else if ((m = ProfileViewer.STACK_TRACE_REPETITION_ELEMENT.matcher(line)).matches()) {
+                int repetitions = Integer.parseInt(m.group(1));
+                Object frame = frames.lastElement();
+                for (int i = 0; i != repetitions; ++i) {
+                    frames.addElement(frame);
+                }
+            } else if (ProfileViewer.STACK_TRACE_END.matcher(line).matches()) {
+                // The frames are recorded from the inner most outwards
+                if (!frames.isEmpty()) {
+                    StringBuffer buf = new StringBuffer();
+                    for (int i = frames.size() - 1; i >= 0; --i) {
+                        buf.append(frames.elementAt(i));
+                        if (i != 0) {
+                            buf.append(';');
+                        }
+                    }
+                    addSamples(buf.toString(), 1);
+                    count++;
+                }
+                frames.removeAllElements();
+                inSample = false;
+            } else {
+                System.err.println("warning: " + in.formatErrorMessage("parse error of stack trace entry"));
+                frames.removeAllElements();
+                inSample = false;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads a profile, which may be an aggregated call tree or a trace file.
+     *
+     * @param file  the profile
+     * @return the number of samples read
+     */
+    private long readProfile(File file) {
+        InputFile in = new InputFile(file);
+
+        // Create a relocator from the first line and use it to relocate any canonical
+        // address in the symbols
+        symbols.relocate(ProfileViewer.createAddressRelocator(in.readLine()), false);
+
+        String line = in.readLine();
+        if (line != null) {
+            Matcher m = PROFILE_TREE.matcher(line);
+            if (m.matches()) {
+                long dropped = Long.parseLong(m.group(2));
+                if (dropped != 0) {
+                    System.err.println("warning: " + dropped + " samples were dropped because the profile call tree was full");
+                }
+                return readTree(in);
+            }
+            if (ProfileViewer.STACK_TRACE_START.matcher(line).matches()) {
+                // Put the line back by re-reading the file
+                in = new InputFile(file);
+                in.readLine();
+            }
+            return readStackTraces(in);
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the collapsed stacks.
+     *
+     * @param out  the stream to write to
+     */
+    private void write(PrintStream out) {
+        for (Iterator i = stacks.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry entry = (Map.Entry)i.next();
+            out.println(entry.getKey() + " " + ((long[])entry.getValue())[0]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Prints the usage message.
+     *
+     * @param errMsg   an optional error message or null
+     */
+    private void usage(String errMsg) {
+        PrintStream out = System.out;
+        if (errMsg != null) {
+            out.println(errMsg);
+        }
+        out.println("Usage: FlameGraphExporter [-options] profile ");
+        out.println("where options include:");
+        out.println("    -map:<file>         map file containing method meta info");
+        out.println("    -lines              include the source line number in each frame");
+        out.println("    -o:<file>           write the collapsed stacks to <file> instead of standard output");
+        out.println("    -h                  show this message and exit");
+        out.println();
+    }
+
+    /**
+     * Parses the command line arguments and exports the profile.
+     *
+     * @param args   command line arguments
+     */
+    private void run(String[] args) throws IOException {
+        Vector symbolsToLoad = new Vector();
+        symbolsToLoad.addElement("squawk.sym");
+        symbolsToLoad.addElement("squawk_dynamic.sym");
+        String outFile = null;
+
+        int argc = 0;
+        while (argc != args.length) {
+            String arg = args[argc];
+            if (arg.charAt(0) != '-') {
+                break;
+            } else if (arg.startsWith("-map:")) {
+                symbolsToLoad.addElement(arg.substring("-map:".length()));
+            } else if (arg.equals("-lines")) {
+                lineNumbers = true;
+            } else if (arg.startsWith("-o:")) {
+                outFile = arg.substring("-o:".length());
+            } else if (arg.equals("-h")) {
+                usage(null);
+                return;
+            } else {
+                usage("Unknown option: " + arg);
+                return;
+            }
+            argc++;
+        }
+
+        if (argc == args.length) {
+            usage("Missing profile");
+            return;
+        }
+
+        // Load the symbols
+        for (Enumeration e = symbolsToLoad.elements(); e.hasMoreElements();) {
+            symbols.loadIfFileExists(new File((String)e.nextElement()));
+        }
+
+        long samples = readProfile(new File(args[argc]));
+        if (outFile == null) {
+            write(System.out);
+        } else {
+            PrintStream out = new PrintStream(new FileOutputStream(outFile));
+            write(out);
+            out.close();
+        }
+        System.err.println("exported " + samples + " samples in " + stacks.size() + " distinct stacks");
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * @param args  command line arguments
+     */
+    public static void main(String[] args) throws IOException {
+        new FlameGraphExporter().run(args);
+    }
+}
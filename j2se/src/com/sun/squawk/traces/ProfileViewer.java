@@ -97,8 +97,8 @@ public class ProfileViewer extends JFrame implements WindowListener, ComponentLi
      * @param line   the first line of the profile
      * @return the created AddressRelocator
      */
-    AddressRelocator createAddressRelocator(String line) {
-        Matcher m = Pattern.compile("\\*TRACE\\*:\\*ROM\\*:(\\d+):(\\d+):\\*NVM\\*:(\\d+):(\\d+)").matcher(line);
+    static AddressRelocator createAddressRelocator(String line) {
+        Matcher m = Pattern.compile("\\*TRACE\\*:\\*ROM\\*:(\\d+):(\\d+):\\*NVM\\*:(\\d+):(\\d+)(:\\*\\d+\\*)?").matcher(line);
         boolean matches = m.matches();
         Assert.that(matches, "first line of trace does not match the required pattern: " + m.pattern().pattern());
 
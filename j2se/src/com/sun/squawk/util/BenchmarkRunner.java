@@ -0,0 +1,382 @@
+/*
+ * Copyright 2006 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ * This is a part of the Squawk JVM.
+ */
+package com.sun.squawk.util;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The host side driver for the benchmark harness in the benchmarks module
+ * (<code>squawk.application.BenchmarkHarness</code>). It runs the harness in a number
+ * of separate invocations (forks) of the squawk executable, combines the samples from
+ * each fork, writes the combined results as JSON and optionally compares them against
+ * the results of a previous run. A benchmark that fails in any fork is reported as failed
+ * and has no statistics.
+ */
+public class BenchmarkRunner {
+
+    /**
+     * The prefix of the lines printed by the harness with the <code>-json</code> option.
+     */
+    private static final String RESULT_PREFIX = "{\"benchmark\":";
+
+    /**
+     * The combined results for a single benchmark.
+     */
+    static class Result {
+        final String name;
+        String kind;
+        int forks;
+        final Vector samples = new Vector();
+
+        /**
+         * The reason the benchmark failed in any fork or null if it never failed.
+         */
+        String failure;
+
+        /**
+         * The statistics computed by {@link #summarize} or null if there are no samples.
+         */
+        BenchmarkStatistics stats;
+
+        Result(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Computes the summary statistics from the samples.
+         */
+        void summarize() {
+            if (failure == null && !samples.isEmpty()) {
+                long[] values = new long[samples.size()];
+                for (int i = 0; i != values.length; ++i) {
+                    values[i] = ((Long)samples.elementAt(i)).longValue();
+                }
+                stats = new BenchmarkStatistics(values);
+            }
+        }
+
+        String toJSON() {
+            StringBuffer buf = new StringBuffer();
+            buf.append(RESULT_PREFIX).append('"').append(name).append("\",\"kind\":\"").append(kind).
+                append("\",\"unit\":\"ms\",\"forks\":").append(forks).append(',');
+            if (stats == null) {
+                buf.append("\"failed\":\"").append(failure).append("\"}");
+                return buf.toString();
+            }
+            return stats.appendJSON(buf).toString();
+        }
+    }
+
+    /*---------------------------------------------------------------------------*\
+     *                       Minimal JSON field extraction                       *
+    \*---------------------------------------------------------------------------*/
+
+    /**
+     * Gets the start of the value of a field in a single line JSON object.
+     *
+     * @return the index of the first character of the value
+     * @throws IllegalArgumentException if the field is not present
+     */
+    private static int valueStart(String json, String field) {
+        String key = "\"" + field + "\":";
+        int index = json.indexOf(key);
+        if (index == -1) {
+            throw new IllegalArgumentException("missing field '" + field + "' in " + json);
+        }
+        return index + key.length();
+    }
+
+    static String getString(String json, String field) {
+        int start = valueStart(json, field) + 1;
+        return json.substring(start, json.indexOf('"', start));
+    }
+
+    static double getNumber(String json, String field) {
+        int start = valueStart(json, field);
+        int end = start;
+        while (end < json.length() && ",}]".indexOf(json.charAt(end)) == -1) {
+            end++;
+        }
+        return Double.parseDouble(json.substring(start, end).trim());
+    }
+
+    static long[] getLongArray(String json, String field) {
+        int start = valueStart(json, field) + 1;
+        java.util.StringTokenizer st = new java.util.StringTokenizer(json.substring(start, json.indexOf(']', start)), ",");
+        long[] values = new long[st.countTokens()];
+        for (int i = 0; i != values.length; ++i) {
+            values[i] = Long.parseLong(st.nextToken().trim());
+        }
+        return values;
+    }
+
+    /*---------------------------------------------------------------------------*\
+     *                                 Running                                   *
+    \*---------------------------------------------------------------------------*/
+
+    /**
+     * Runs the harness in a new squawk process and adds its results to <code>results</code>.
+     *
+     * @param command  the command line
+     * @param results  map from benchmark names to results
+     * @param order    the benchmark names in the order they were first seen
+     * @return the number of benchmarks that failed in this fork
+     */
+    private static int fork(String[] command, Map results, List order) throws IOException, InterruptedException {
+        Process process = Runtime.getRuntime().exec(command);
+        process.getOutputStream().close();
+        StreamGobbler stderr = new StreamGobbler(process.getErrorStream());
+        stderr.start();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        String line;
+        int failures = 0;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(RESULT_PREFIX)) {
+                String name = getString(line, "benchmark");
+                Result result = (Result)results.get(name);
+                if (result == null) {
+                    result = new Result(name);
+                    result.kind = getString(line, "kind");
+                    results.put(name, result);
+                    order.add(name);
+                }
+                result.forks++;
+                if (line.indexOf("\"failed\":") != -1) {
+                    result.failure = getString(line, "failed");
+                    System.out.println(name + ": FAILED (" + result.failure + ")");
+                    failures++;
+                    continue;
+                }
+                long[] samples = getLongArray(line, "samples");
+                for (int i = 0; i != samples.length; ++i) {
+                    result.samples.addElement(new Long(samples[i]));
+                }
+            }
+        }
+        int exitCode = process.waitFor();
+        stderr.join();
+        if (exitCode != 0 && failures == 0) {
+            throw new IOException("benchmark process exited with code " + exitCode);
+        }
+        return failures;
+    }
+
+    /**
+     * Drains the standard error of a benchmark process so that it cannot block.
+     */
+    static class StreamGobbler extends Thread {
+        private final InputStream in;
+
+        StreamGobbler(InputStream in) {
+            this.in = in;
+        }
+
+        public void run() {
+            try {
+                byte[] buf = new byte[1024];
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    System.err.write(buf, 0, n);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Compares the results against a baseline.
+     *
+     * @param results    the current results
+     * @param order      the benchmark names in the order they were run
+     * @param baseline   the file containing the baseline results
+     * @param threshold  the percentage by which the mean must increase to count as a regression
+     * @return the number of regressions found
+     */
+    private static int compare(Map results, List order, File baseline, double threshold) throws IOException {
+        Map base = new HashMap();
+        BufferedReader reader = new BufferedReader(new FileReader(baseline));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith(RESULT_PREFIX)) {
+                    base.put(getString(line, "benchmark"), line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        int regressions = 0;
+        for (Iterator iterator = order.iterator(); iterator.hasNext(); ) {
+            String name = (String)iterator.next();
+            Result result = (Result)results.get(name);
+            String line = (String)base.get(name);
+            if (result.stats == null) {
+                continue;
+            }
+            if (line == null) {
+                System.out.println(name + ": no baseline");
+                continue;
+            }
+            if (line.indexOf("\"failed\":") != -1) {
+                System.out.println(name + ": baseline failed");
+                continue;
+            }
+            BenchmarkStatistics stats = result.stats;
+            double baseMean = getNumber(line, "mean");
+            double baseCI = getNumber(line, "ci95");
+            double change = (baseMean == 0) ? 0 : (stats.mean - baseMean) * 100 / baseMean;
+
+            /*
+             * A change is only significant if the confidence intervals do not overlap.
+             */
+            boolean significant = (stats.mean - stats.ci95 > baseMean + baseCI) ||
+                                  (stats.mean + stats.ci95 < baseMean - baseCI);
+            String verdict;
+            if (significant && change > threshold) {
+                verdict = "REGRESSION";
+                regressions++;
+            } else if (significant && change < -threshold) {
+                verdict = "improvement";
+            } else {
+                verdict = "no significant change";
+            }
+            System.out.println(name + ": " + format(baseMean) + " ms -> " + format(stats.mean) + " ms (" +
+                               (change >= 0 ? "+" : "") + format(change) + "%) " + verdict);
+        }
+        return regressions;
+    }
+
+    private static String format(double value) {
+        return String.valueOf(Math.round(value * 100) / 100.0);
+    }
+
+    /**
+     * Prints the usage message.
+     *
+     * @param errMsg  an optional error message
+     */
+    private static void usage(String errMsg) {
+        PrintStream out = System.err;
+        if (errMsg != null) {
+            out.println(errMsg);
+        }
+        out.println("Usage: BenchmarkRunner [-options] [-- harness options and benchmarks]");
+        out.println("where options include:");
+        out.println("    -exe:<path>         the squawk executable (default: ./squawk)");
+        out.println("    -cp:<path>          class path of the harness (default: benchmarks/j2meclasses)");
+        out.println("    -vmarg:<arg>        pass <arg> to the squawk executable (may be repeated)");
+        out.println("    -forks:<n>          number of squawk processes to run (default: 3)");
+        out.println("    -o:<file>           write the combined results to <file> (default: benchmarks-results.json)");
+        out.println("    -baseline:<file>    compare the results against those in <file>");
+        out.println("    -threshold:<n>      minimum increase in percent of a mean that is a regression (default: 5)");
+        out.println("    -h                  show this message and exit");
+        out.println();
+        out.println("The exit code is 1 if a regression was found or a benchmark failed.");
+    }
+
+    public static void main(String[] args) throws Exception {
+        String exe = "./squawk";
+        String classPath = "benchmarks/j2meclasses";
+        int forks = 3;
+        File output = new File("benchmarks-results.json");
+        File baseline = null;
+        double threshold = 5;
+        List vmArgs = new ArrayList();
+        List harnessArgs = new ArrayList();
+
+        int argc = 0;
+        for (; argc != args.length; ++argc) {
+            String arg = args[argc];
+            if (arg.startsWith("-exe:")) {
+                exe = arg.substring("-exe:".length());
+            } else if (arg.startsWith("-cp:")) {
+                classPath = arg.substring("-cp:".length());
+            } else if (arg.startsWith("-vmarg:")) {
+                vmArgs.add(arg.substring("-vmarg:".length()));
+            } else if (arg.startsWith("-forks:")) {
+                forks = Integer.parseInt(arg.substring("-forks:".length()));
+            } else if (arg.startsWith("-o:")) {
+                output = new File(arg.substring("-o:".length()));
+            } else if (arg.startsWith("-baseline:")) {
+                baseline = new File(arg.substring("-baseline:".length()));
+            } else if (arg.startsWith("-threshold:")) {
+                threshold = Double.parseDouble(arg.substring("-threshold:".length()));
+            } else if (arg.equals("-h")) {
+                usage(null);
+                return;
+            } else if (arg.equals("--")) {
+                argc++;
+                break;
+            } else {
+                usage("Unknown option: " + arg);
+                System.exit(1);
+            }
+        }
+        for (; argc != args.length; ++argc) {
+            harnessArgs.add(args[argc]);
+        }
+
+        List command = new ArrayList();
+        command.add(exe);
+        command.addAll(vmArgs);
+        command.add("-cp:" + classPath);
+        command.add("squawk.application.BenchmarkHarness");
+        command.add("-json");
+        command.addAll(harnessArgs);
+        String[] commandArray = (String[])command.toArray(new String[command.size()]);
+
+        Map results = new HashMap();
+        List order = new ArrayList();
+        int failures = 0;
+        for (int i = 0; i != forks; ++i) {
+            System.out.println("[fork " + (i + 1) + " of " + forks + "]");
+            failures += fork(commandArray, results, order);
+        }
+
+        PrintWriter out = new PrintWriter(new FileWriter(output));
+        try {
+            out.println("[");
+            for (Iterator iterator = order.iterator(); iterator.hasNext(); ) {
+                Result result = (Result)results.get(iterator.next());
+                result.summarize();
+                out.print(result.toJSON());
+                out.println(iterator.hasNext() ? "," : "");
+                BenchmarkStatistics stats = result.stats;
+                if (stats == null) {
+                    System.out.println(result.name + ": FAILED (" + result.failure + ")");
+                } else {
+                    System.out.println(result.name + ": mean " + format(stats.mean) + " ms +/- " + format(stats.ci95) +
+                                       " (95% CI), p50 " + stats.p50 + " ms, p99 " + stats.p99 + " ms, n = " + stats.samples.length);
+                }
+            }
+            out.println("]");
+        } finally {
+            out.close();
+        }
+        System.out.println("results written to " + output);
+
+        int regressions = 0;
+        if (baseline != null) {
+            regressions = compare(results, order, baseline, threshold);
+            if (regressions != 0) {
+                System.out.println(regressions + " regression(s) found");
+            }
+        }
+        if (failures != 0) {
+            System.out.println(failures + " benchmark run(s) failed");
+        }
+        if (regressions != 0 || failures != 0) {
+            System.exit(1);
+        }
+    }
+}
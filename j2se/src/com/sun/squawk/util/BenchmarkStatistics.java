@@ -0,0 +1,132 @@
+/*
+ * Copyright 2006 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ * This is a part of the Squawk JVM.
+ */
+package com.sun.squawk.util;
+
+/**
+ * The summary statistics for the measured iterations of a benchmark, as computed by
+ * {@link BenchmarkRunner} for the samples combined from several runs of the benchmark
+ * harness. This is a copy of <code>squawk.application.BenchmarkStatistics</code> in
+ * the benchmarks module, which is kept out of the bootstrap suite, and must compute
+ * the statistics in the same way.
+ */
+public final class BenchmarkStatistics {
+
+    /**
+     * The two sided 97.5% quantiles of Student's t-distribution for 1 to 30 degrees of freedom.
+     */
+    private static final double[] T_975 = {
+        12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+         2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+         2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+
+    /**
+     * The samples in the order they were measured.
+     */
+    public final long[] samples;
+
+    public final double mean;
+    public final double stddev;
+    public final long min;
+    public final long max;
+    public final long p50;
+    public final long p99;
+
+    /**
+     * The half width of the 95% confidence interval for the mean.
+     */
+    public final double ci95;
+
+    /**
+     * Computes the statistics for some samples.
+     *
+     * @param samples  the samples (there must be at least one)
+     */
+    public BenchmarkStatistics(long[] samples) {
+        this.samples = samples;
+        int n = samples.length;
+        long[] sorted = new long[n];
+        System.arraycopy(samples, 0, sorted, 0, n);
+        sort(sorted);
+
+        double sum = 0;
+        for (int i = 0; i != n; ++i) {
+            sum += sorted[i];
+        }
+        mean = sum / n;
+
+        double squares = 0;
+        for (int i = 0; i != n; ++i) {
+            double d = sorted[i] - mean;
+            squares += d * d;
+        }
+        stddev = (n > 1) ? Math.sqrt(squares / (n - 1)) : 0;
+
+        min = sorted[0];
+        max = sorted[n - 1];
+        p50 = percentile(sorted, 50);
+        p99 = percentile(sorted, 99);
+
+        if (n > 1) {
+            double t = (n - 1 <= T_975.length) ? T_975[n - 2] : 1.960;
+            ci95 = t * stddev / Math.sqrt(n);
+        } else {
+            ci95 = 0;
+        }
+    }
+
+    /**
+     * Appends the samples and statistics as the fields of a JSON object, starting
+     * with <code>"samples":</code> and including the closing brace of the object.
+     *
+     * @param buf  the buffer to append to
+     * @return <code>buf</code>
+     */
+    public StringBuffer appendJSON(StringBuffer buf) {
+        buf.append("\"samples\":[");
+        for (int i = 0; i != samples.length; ++i) {
+            if (i != 0) {
+                buf.append(',');
+            }
+            buf.append(samples[i]);
+        }
+        buf.append("],\"mean\":").append(mean).
+            append(",\"stddev\":").append(stddev).
+            append(",\"min\":").append(min).
+            append(",\"max\":").append(max).
+            append(",\"p50\":").append(p50).
+            append(",\"p99\":").append(p99).
+            append(",\"ci95\":").append(ci95).
+            append('}');
+        return buf;
+    }
+
+    /**
+     * Gets a percentile of some sorted samples using the nearest rank method.
+     */
+    private static long percentile(long[] sorted, int percent) {
+        int rank = (percent * sorted.length + 99) / 100;
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    /**
+     * Sorts an array of longs in place. The arrays are small so an insertion sort is fine.
+     */
+    private static void sort(long[] a) {
+        for (int i = 1; i < a.length; ++i) {
+            long value = a[i];
+            int j = i - 1;
+            while (j >= 0 && a[j] > value) {
+                a[j + 1] = a[j];
+                --j;
+            }
+            a[j + 1] = value;
+        }
+    }
+}
@@ -269,6 +269,44 @@ public class GUIOutputChannel extends Channel implements FocusListener, KeyListe
         }
     }
 
+    /**
+     * Executes the drawing operations in a display list recorded by awtcore.impl.squawk.DisplayList.
+     * Each entry is an opcode, the number of arguments and the arguments.
+     *
+     * @param list    the display list
+     * @param length  the number of entries of <code>list</code> in use
+     */
+    private void drawDisplayList(int[] list, int length) {
+        int[] args = new int[6];
+        int i = 0;
+        while (i < length) {
+            int op   = list[i++];
+            int argc = list[i++];
+            switch (op) {
+                case ChannelConstants.DRAWSTRING: {
+                    char[] chars = new char[argc - 2];
+                    for (int j = 0; j < chars.length; j++) {
+                        chars[j] = (char)list[i + 2 + j];
+                    }
+                    execute(op, list[i], list[i + 1], 0, 0, 0, 0, new String(chars), null);
+                    break;
+                }
+                case ChannelConstants.FILLPOLYGON: {
+                    int[] comb = new int[argc - 1];
+                    System.arraycopy(list, i + 1, comb, 0, comb.length);
+                    execute(op, list[i], 0, 0, 0, 0, 0, comb, null);
+                    break;
+                }
+                default: {
+                    System.arraycopy(list, i, args, 0, argc);
+                    execute(op, args[0], args[1], args[2], args[3], args[4], args[5], null, null);
+                    break;
+                }
+            }
+            i += argc;
+        }
+    }
+
    /*
     * execute
     */
@@ -558,6 +596,13 @@ public class GUIOutputChannel extends Channel implements FocusListener, KeyListe
                     }
                     break;
                 }
+                case ChannelConstants.DRAWDISPLAYLIST: {                      // awtcore.impl.squawk.DisplayList
+                    int[] list   = (int[])o1;
+                    int   length =        i1;
+                    if (TRACING_ENABLED) ChannelIO.trace("drawDisplayList "+length);
+                    drawDisplayList(list, length);
+                    break;
+                }
                 case ChannelConstants.REPAINT: {                              // awtcore.impl.squawk.GraphicsImpl
                     if (TRACING_ENABLED) ChannelIO.trace("repaint0");
                     if (!isHeadless) {
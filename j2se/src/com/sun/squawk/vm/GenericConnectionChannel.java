@@ -250,11 +250,16 @@ public class GenericConnectionChannel extends Channel {
                     return getEventNumber();
                 }
                 int    off = i1;
-                int    len = Math.min(i2, dis.available());
                 byte[] buf = (byte[])o2;
+
+                /*
+                 * Fill as much of the buffer as can be read without blocking. At least one
+                 * byte is asked for so that EOF is reported as -1 instead of an empty read.
+                 */
+                int    len = Math.min(i2, Math.max(1, dis.available()));
                 result = dis.read(buf, off, len);
                 if (inLog != null) {
-                    for (int i = off; i < off + len; i++) {
+                    for (int i = off; i < off + result; i++) {
                         inLog.writeByte(buf[i]);
                     }
                 }
@@ -135,6 +135,30 @@ public class TestMailboxes {
             ex.printStackTrace();
         }
         
+        System.out.println("\n cleanup GC:");
+        System.gc();
+        System.gc();
+        System.out.println("\nTime test of large frames, copied vs. transferred (3 runs each):");
+        try {
+            for (int i = 0; i < 3; i++) {
+                FrameMsgTimeTest.main(new String[] {"copy"});
+            }
+            for (int i = 0; i < 3; i++) {
+                FrameMsgTimeTest.main(new String[] {"transfer"});
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        
+        System.out.println("\n cleanup GC:");
+        System.gc();
+        System.gc();
+        System.out.println("\nTime test of one server thread selecting over " + NUM_CLIENTS + " channels:");
+        try {
+            SelectorMsgTimeTest.main(new String[0]);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
         
         System.exit(0);
     }
@@ -593,6 +617,240 @@ class ISMsgTimeTest {
     }
 }
 
+/**
+ *===============================================================================
+ * Time sending large frames with ByteArrayEnvelopes (copied) or ByteArrayTransferEnvelopes (transferred).
+ * Time client sending NUM_FRAMES frames, where server sends the frame back to the client.
+ * When transferring, the client recycles the returned frames through an EnvelopeBufferPool.
+ */
+class FrameMsgTimeTest {
+    public final static int NUM_FRAMES = 200;
+    public final static int FRAME_SIZE = 64 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        boolean transfer = args.length > 0 && args[0].equals("transfer");
+        Client client = new Client(transfer);
+        
+        Server server = new Server();
+        server.start();
+        
+        client.start();
+        client.join();
+        
+        server.join();
+    }
+    
+    /**
+     * The client thread class.
+     */
+    static class Client extends Thread {
+        private final boolean transfer;
+        
+        Client(boolean transfer) {
+            this.transfer = transfer;
+        }
+        
+        public void run() {
+             try {
+                EnvelopeBufferPool pool = new EnvelopeBufferPool(2);
+                byte[] frame = new byte[FRAME_SIZE];
+                
+                long start = System.currentTimeMillis();
+                Mailbox inBox = Mailbox.create();
+                MailboxAddress echoBox = MailboxAddress.lookupMailbox("FrameMsgTimeTest", inBox);
+                
+                for (int i = 0; i < NUM_FRAMES; i++) {
+                    Envelope cmdEnv;
+                    if (transfer) {
+                        byte[] data = pool.allocate(FRAME_SIZE);
+                        data[0] = (byte)i;
+                        cmdEnv = new ByteArrayTransferEnvelope(data);
+                    } else {
+                        frame[0] = (byte)i;
+                        cmdEnv = new ByteArrayEnvelope(frame);
+                    }
+                    echoBox.send(cmdEnv);
+                    
+                    Envelope replyEnv = inBox.receive();
+                    byte[] reply;
+                    if (transfer) {
+                        reply = ((ByteArrayTransferEnvelope)replyEnv).getData();
+                    } else {
+                        reply = ((ByteArrayEnvelope)replyEnv).getData();
+                    }
+                    if (reply.length != FRAME_SIZE || reply[0] != (byte)i) {
+                        System.err.println("Reply not OK");
+                    }
+                    if (transfer) {
+                        pool.release(reply);
+                    }
+                }
+                long time = System.currentTimeMillis() - start;
+                
+                System.err.println("Client " + (transfer ? "transferred " : "copied ") + NUM_FRAMES + " frames of " + FRAME_SIZE +
+                                   " bytes in " + time + "ms (" + (time == 0 ? 0 : (NUM_FRAMES * 1000L / time)) + " messages/sec)");
+                echoBox.close();
+                inBox.close();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+    
+    /**
+     * The server thread class.
+     */
+    static class Server extends Thread {
+        
+        public void run() {
+            Mailbox inBox = null;
+            
+            try {
+                // use handler that will throw exception when client closes:
+                inBox = Mailbox.create("FrameMsgTimeTest", new SharedMailboxHandler() {
+                    // arrange to shut down server when client goes away:
+                    public AddressClosedException handleClose(MailboxAddress address) {
+                        return new AddressClosedException(address);
+                    }
+                });
+            } catch (MailboxInUseException ex) {
+                throw new RuntimeException(ex.toString());
+            }
+            
+            try {
+                
+                // handle messages:
+                while (true) {
+                    Envelope msg;
+                    try {
+                        msg = inBox.receive();
+                    } catch (MailboxClosedException e) {
+                        System.out.println("Server seems to have gone away. Oh well. " + inBox);
+                        break;
+                    }
+                    
+                    // send the frame back the same way it arrived:
+                    Envelope replyEnv = null;
+                    if (msg instanceof ByteArrayTransferEnvelope) {
+                        replyEnv = new ByteArrayTransferEnvelope(((ByteArrayTransferEnvelope)msg).getData());
+                    } else if (msg instanceof ByteArrayEnvelope) {
+                        replyEnv = new ByteArrayEnvelope(((ByteArrayEnvelope)msg).getData());
+                    }
+                    if (replyEnv != null) {
+                        try {
+                            msg.getReplyAddress().send(replyEnv);
+                        } catch (AddressClosedException ex) {
+                            System.out.println("Client seems to have gone away. Oh well. " + msg.getToAddress());
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                // ok, just close server.
+            } finally {
+                System.out.println("Closing server...");
+                inBox.close();
+            }
+        }
+    }
+}
+
+/**
+ *===============================================================================
+ * Time NUM_CLIENTS clients each sending NUM_MESSAGES messages to a server that
+ * services all of their Channels from one thread using a MailboxSelector.
+ */
+class SelectorMsgTimeTest {
+
+    public static void main(String[] args) throws Exception {
+        Server server = new Server();
+        server.start();
+        
+        Client[] clients = new Client[TestMailboxes.NUM_CLIENTS];
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = new Client();
+            clients[i].start();
+        }
+        for (int i = 0; i < clients.length; i++) {
+            clients[i].join();
+        }
+        long time = System.currentTimeMillis() - start;
+        System.err.println(clients.length + " clients sent " + TestMailboxes.NUM_MESSAGES + " messages each in " + time + "ms");
+        
+        server.join();
+    }
+    
+    /**
+     * The client thread class.
+     */
+    static class Client extends Thread {
+        public void run() {
+            try {
+                byte[] data = TestMailboxes.msg1.getBytes();
+                Channel channel = Channel.lookup("SelectorMsgTimeTest");
+                
+                for (int i = 0; i < TestMailboxes.NUM_MESSAGES; i++) {
+                    channel.send(new ByteArrayEnvelope(data));
+                    byte[] replyData = ((ByteArrayEnvelope)channel.receive()).getData();
+                    if (replyData[0] != 0) {
+                        System.err.println("Reply not OK");
+                    }
+                }
+                channel.close();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+    
+    /**
+     * The server thread class.
+     */
+    static class Server extends Thread {
+        
+        public void run() {
+            byte[] replyData = new byte[1];
+            Envelope[] batch = new Envelope[16];
+            ServerChannel serverChannel;
+            
+            try {
+                serverChannel = ServerChannel.create("SelectorMsgTimeTest");
+            } catch (MailboxInUseException ex) {
+                throw new RuntimeException(ex.toString());
+            }
+            
+            MailboxSelector selector = new MailboxSelector();
+            selector.register(serverChannel);
+            int closed = 0;
+            
+            // handle messages until all clients have gone away:
+            while (closed < TestMailboxes.NUM_CLIENTS) {
+                Object source = selector.select();
+                if (source == serverChannel) {
+                    selector.register(serverChannel.accept());
+                    continue;
+                }
+                
+                Channel channel = (Channel)source;
+                try {
+                    int n = channel.drainTo(batch);
+                    for (int i = 0; i < n; i++) {
+                        channel.send(new ByteArrayEnvelope(replyData));
+                        batch[i] = null;
+                    }
+                } catch (IOException ex) {
+                    selector.unregister(channel);
+                    channel.close();
+                    closed++;
+                }
+            }
+            
+            System.out.println("Closing server...");
+            serverChannel.close();
+        }
+    }
+}
+
 /**
  *===============================================================================
  * Time old inter-isolate mechanism.
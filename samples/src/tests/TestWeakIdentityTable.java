@@ -0,0 +1,58 @@
+/*
+ * Copyright 2006 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ * This is a part of the Squawk JVM.
+ */
+package tests;
+
+import com.sun.squawk.*;
+import com.sun.squawk.util.*;
+
+/**
+ * Tests that a {@link WeakIdentityIntHashtable} drops the entries of collected objects.
+ * This depends on the collector counting the weak references it clears, so it should be
+ * run on a VM built with each of the collectors (the GC property in build.properties).
+ */
+public class TestWeakIdentityTable {
+
+    static final int LIVE = 10;
+    static final int DEAD = 1000;
+
+    /**
+     * Adds entries for objects that are not referenced from anywhere else.
+     */
+    static void addGarbage(WeakIdentityIntHashtable table) {
+        for (int i = 0; i != DEAD; ++i) {
+            table.put(LIVE + 1 + i, new Object());
+        }
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new RuntimeException("TestWeakIdentityTable failed: " + message);
+        }
+    }
+
+    public static void main(String[] args) {
+        WeakIdentityIntHashtable table = new WeakIdentityIntHashtable();
+        Object[] live = new Object[LIVE];
+        for (int i = 0; i != LIVE; ++i) {
+            live[i] = new Object();
+            table.put(i + 1, live[i]);
+        }
+        addGarbage(table);
+
+        int cleared = GC.getClearedWeakReferenceCount();
+        System.gc();
+        check(GC.getClearedWeakReferenceCount() - cleared >= DEAD, "cleared weak references were not counted");
+        check(table.size() == LIVE, "size is " + table.size() + " instead of " + LIVE);
+        for (int i = 0; i != LIVE; ++i) {
+            check(table.get(i + 1) == live[i], "lost the object with key " + (i + 1));
+            check(table.getKey(live[i]) == i + 1, "lost the key of object " + i);
+        }
+        System.out.println("TestWeakIdentityTable passed");
+    }
+}
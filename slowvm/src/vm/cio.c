@@ -208,6 +208,35 @@ void cioExecute(void) {
             break;
         }
 
+        case ChannelConstants_INTERNAL_PROFILE_SNAPSHOT: {
+#ifdef PROFILING
+            if (profileNodes != null) {
+                char fileName[1024];
+                jlong samples = -1;
+                if (strlen(profileTreeFile) < sizeof(fileName) - 12) {
+                    sprintf(fileName, "%s.%d", profileTreeFile, ++profileSnapshotCount);
+                    samples = writeProfileTree(fileName);
+                }
+                if (i1 != 0) {
+                    resetProfileTree();
+                }
+                returnLongResult(samples);
+                break;
+            }
+#endif /* PROFILING */
+            returnLongResult(-1);
+            break;
+        }
+
+        case ChannelConstants_INTERNAL_PROFILE_RESET: {
+#ifdef PROFILING
+            if (profileNodes != null) {
+                resetProfileTree();
+            }
+#endif /* PROFILING */
+            break;
+        }
+
         case ChannelConstants_INTERNAL_MATH: {
             fatalVMError("Unimplemented internal channel I/O operation");
         }
@@ -9,6 +9,36 @@
 
 #define MAX_STREAMS 4
 
+/**
+ * An entry in the interface dispatch cache. Each entry maps the receiver classes
+ * seen at a single findslot instruction to the vtable slots that implement the
+ * interface method invoked at that call site.
+ */
+typedef struct interfaceCacheEntryStruct {
+    ByteAddress  site;                           /* The address following the findslot instruction or null if the entry is unused. */
+    Address      method;                         /* The method containing the call site. */
+    int          count;                          /* The number of valid receiver mappings or -1 if the site is megamorphic. */
+    Address      klasses[INTERFACE_CACHE_WAYS];  /* The receiver classes. */
+    int          slots[INTERFACE_CACHE_WAYS];    /* The vtable slot corresponding to each receiver class. */
+    int          hits;                           /* The number of lookups satisfied by this entry. */
+    int          misses;                         /* The number of lookups that required a search of the class hierarchy. */
+} InterfaceCacheEntry;
+
+#ifdef PROFILING
+/**
+ * A node in the call tree that profile samples are aggregated into when the -Xproftree
+ * option is used. A node is identified by its parent node and the method and bytecode
+ * offset of its frame.
+ */
+typedef struct profileNodeStruct {
+    Address      method;                         /* The method of the frame. */
+    int          pc;                             /* The bytecode offset of the frame. */
+    int          parent;                         /* The index of the node of the calling frame or -1 for an outer most frame. */
+    int          next;                           /* The index of the next node in the same hash bucket or -1. */
+    jlong        samples;                        /* The number of samples whose inner most frame is this node. */
+} ProfileNode;
+#endif /* PROFILING */
+
 /**
  * This struct encapsulates all the globals in the Squawk VM. This allows
  * a system to be built with several seporate VM execution contexts.
@@ -70,6 +100,16 @@ typedef struct globalsStruct {
 #ifdef PROFILING
     int         _sampleFrequency;            /* The profile sample frequency */
     jlong       _instructionCount;
+    jlong      *_pairCounts;                 /* The dynamic counts of each pair of consecutively dispatched opcodes (or null) */
+    jlong      *_opcodeCounts;               /* The dynamic counts of each dispatched opcode (null if pairCounts is null) */
+    char       *_pairProfileFile;            /* The file to which the opcode pair counts are written on exit */
+    ProfileNode *_profileNodes;              /* The nodes of the aggregated profile call tree (or null if samples are written to the trace file) */
+    int        *_profileBuckets;             /* The hash table of profile nodes */
+    int         _profileNodeCount;           /* The number of nodes in use */
+    jlong       _profileSampleCount;         /* The number of samples in the tree */
+    jlong       _profileDroppedCount;        /* The number of samples dropped because the tree was full */
+    int         _profileSnapshotCount;       /* The number of snapshots written at the request of the application */
+    char       *_profileTreeFile;            /* The file to which the profile call tree is written */
 #endif /* PROFILING */
 
 #if TRACE
@@ -89,6 +129,9 @@ typedef struct globalsStruct {
     int         _pendingMonitorAccesses;
     int         _pendingMonitorHits;
 
+    InterfaceCacheEntry _interfaceCache[INTERFACE_CACHE_SIZE];
+    boolean     _interfaceCacheStats;        /* Specifies if per call site interface cache stats are dumped on exit. */
+
     jlong       _lastStatCount;
     boolean     _notrap;
 } Globals;
@@ -196,6 +239,9 @@ boolean     kernelSendNotify;           /* Control whether to notify potential (
 #define pendingMonitorAccesses              defineGlobal(pendingMonitorAccesses)
 #define pendingMonitorHits                  defineGlobal(pendingMonitorHits)
 
+#define interfaceCache                      defineGlobal(interfaceCache)
+#define interfaceCacheStats                 defineGlobal(interfaceCacheStats)
+
 #define streams                             defineGlobal(streams)
 #define currentStream                       defineGlobal(currentStream)
 
@@ -221,6 +267,16 @@ boolean     kernelSendNotify;           /* Control whether to notify potential (
 #ifdef PROFILING
 #define sampleFrequency                     defineGlobal(sampleFrequency)
 #define instructionCount                    defineGlobal(instructionCount)
+#define pairCounts                          defineGlobal(pairCounts)
+#define opcodeCounts                        defineGlobal(opcodeCounts)
+#define pairProfileFile                     defineGlobal(pairProfileFile)
+#define profileNodes                        defineGlobal(profileNodes)
+#define profileBuckets                      defineGlobal(profileBuckets)
+#define profileNodeCount                    defineGlobal(profileNodeCount)
+#define profileSampleCount                  defineGlobal(profileSampleCount)
+#define profileDroppedCount                 defineGlobal(profileDroppedCount)
+#define profileSnapshotCount                defineGlobal(profileSnapshotCount)
+#define profileTreeFile                     defineGlobal(profileTreeFile)
 #endif
 
 #if TRACE
@@ -317,8 +317,26 @@ void CIO_initialize(JNIEnv *jniEnv, char *classPath, char** args, int argc) {
         if (JNI_env == null) {
             res = 0;
         } else {
-            s1 = createJVMObject(send,   true);
-            r1 = createJVMObject(receive, false);
+            /*
+             * As for the I/O port, only the part of the buffer used by a ChannelConstants_READBUF
+             * or ChannelConstants_WRITEBUF is copied between Squawk and the embedded JVM.
+             * Likewise, only the first i1 entries of a graphics display list are sent.
+             */
+            if (op == ChannelConstants_WRITEBUF && send != null) {
+                s1 = createJVMByteArray((char *)send + i1, i2, true);
+                i1 = 0;
+            } else if (op == ChannelConstants_DRAWDISPLAYLIST && send != null) {
+                s1 = createJVMIntArray(send, i1, true);
+            } else {
+                s1 = createJVMObject(send, true);
+            }
+            if (op == ChannelConstants_READBUF && receive != null) {
+                receive = (char *)receive + i1;
+                r1 = createJVMByteArray(receive, i2, false);
+                i1 = 0;
+            } else {
+                r1 = createJVMObject(receive, false);
+            }
 //fprintf(stderr, ">>> %d %d %d\n", cio, op, channelID);
             res = (*JNI_env)->CallStaticIntMethod(JNI_env, channelIO_clazz, channelIO_execute, context, op, channel, i1, i2, i3, i4, i5, i6, s1, r1);
             jni_check("CIO_execute failure");
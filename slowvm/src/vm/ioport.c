@@ -279,7 +279,8 @@ static int ioport_execute(
 
     /*
      * Another useful optimization is for the unused part of a sent buffer for
-     * ChannelConstants_WRITEBUF to be omitted.
+     * ChannelConstants_WRITEBUF to be omitted. Likewise, only the first i1 entries
+     * of a ChannelConstants_DRAWDISPLAYLIST display list are sent.
      */
     if (op == ChannelConstants_WRITEBUF) {
         i1 = 0;
@@ -310,6 +311,8 @@ static int ioport_execute(
      */
     if (op == ChannelConstants_WRITEBUF) {
         writeIOPObjectPrim(CID_BYTE_ARRAY, ((char *)send) + original_i1, i2);
+    } else if (op == ChannelConstants_DRAWDISPLAYLIST && send != null) {
+        writeIOPObjectPrim(CID_INT_ARRAY, send, i1);
     } else {
         writeIOPObject(send);
     }
@@ -12,6 +12,7 @@ import java.util.Enumeration;
 import java.util.Vector;
 import com.sun.squawk.util.*;
 import com.sun.squawk.translator.ci.*;
+import com.sun.squawk.translator.ir.Accessor;
 import com.sun.squawk.pragma.HostedPragma;
 import com.sun.squawk.Klass;
 import com.sun.squawk.*;
@@ -298,6 +299,39 @@ public final class ClassFile {
      *                       Class loading and converting                        *
     \*---------------------------------------------------------------------------*/
 
+    /**
+     * Records the methods of this class that are field accessors whose calls can be
+     * replaced by the field access. Only methods that cannot be overridden are considered.
+     *
+     * @param translator   the translation context
+     */
+    void findAccessors(Translator translator) {
+        if (definedClass.isSquawkPrimitive()) {
+            return;
+        }
+        for (int s = 0; s != 2; ++s) {
+            boolean isStatic = (s == 0);
+            Code[] methodsCode = isStatic ? staticMethods : virtualMethods;
+            for (int i = 0 ; i < methodsCode.length ; i++) {
+                Method method = definedClass.getMethod(i, isStatic);
+                Code code = methodsCode[i];
+                if (code == null || code.getBytes() == null || code.getBytes() == Code.SYNTHESIZED_DEFAULT_CONSTRUCTOR_CODE) {
+                    continue;
+                }
+                if (method.isHosted() || method.isAbstract() || method.isNative() || method.isSynchronized() ||
+                    method.isNotInlined() || method.isConstructor() || method.isClassInitializer()) {
+                    continue;
+                }
+                if (isStatic || method.isPrivate() || method.isFinal() || definedClass.isFinal()) {
+                    Accessor accessor = Accessor.create(method, code.getBytes(), constantPool);
+                    if (accessor != null) {
+                        translator.addAccessor(method, accessor);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Converts a set of methods from their Java bytecode form to their
      * Squawk bytecode form.
@@ -166,6 +166,16 @@ public final class Code {
      */
     private byte[] code;
 
+    /**
+     * Gets the data in the "Code" class file attribute for this method. This is only
+     * valid before the method has been converted.
+     *
+     * @return the data in the "Code" attribute or {@link #SYNTHESIZED_DEFAULT_CONSTRUCTOR_CODE}
+     */
+    byte[] getBytes() {
+        return code;
+    }
+
     /**
      * CodeParser held between phase 1 and 2.
      */
@@ -221,6 +231,7 @@ public final class Code {
             /*
              * Get the code parser and build the IR.
              */
+            Translator.countOptimization(Translator.JAVA_BYTECODES, ((code[4] & 0xFF) << 24) | ((code[5] & 0xFF) << 16) | ((code[6] & 0xFF) << 8) | (code[7] & 0xFF));
             codeParser = new CodeParser(translator, method, code, constantPool);
             irBuilder = new IRBuilder(translator, codeParser);
             IR ir = irBuilder.getIR();
@@ -266,6 +277,13 @@ public final class Code {
             }
 /*end[TRACING_ENABLED]*/
 
+            /*
+             * Remove stores to locals that are only loaded by the next instruction.
+             */
+            if (Translator.removeRedundantLocals() && codeParser.getLocalVariableTableEntries() == null) {
+                new RedundantLocalRemover(ir).transform();
+            }
+
             /*
              * Transform the IR.
              */
@@ -307,6 +325,7 @@ public final class Code {
              * Install the transformed method into the class.
              */
             definingClass.installMethodBody(body, method.isStatic());
+            Translator.countOptimization(Translator.SQUAWK_BYTECODES, body.getCode().length);
 
 /*if[TRACING_ENABLED]*/
             /*
@@ -16,6 +16,7 @@ import com.sun.squawk.util.Assert;
 import com.sun.squawk.SuiteCreator.*;
 import com.sun.squawk.io.connections.*;
 import com.sun.squawk.translator.ci.*;
+import com.sun.squawk.translator.ir.Accessor;
 import com.sun.squawk.util.ComputationTimer;
 import com.sun.squawk.util.Tracer;
 import com.sun.squawk.*;
@@ -51,6 +52,46 @@ public final class Translator implements TranslatorInterface {
     private static boolean optimizeParameterPassing = OPTIMIZEPARAMETERPASSING;
 
 
+    /**
+     * Set to true if calls to methods that only get or set a field (and cannot be
+     * overridden) should be replaced by the field access.
+     */
+    private final static String INLINEACCESSORS_PROPERTY = "translator.inlineAccessors";
+    private final static boolean INLINEACCESSORS = false;
+    private static boolean inlineAccessors = INLINEACCESSORS;
+
+    /**
+     * Set to true if integer and long operations on constant operands should be
+     * replaced by their result.
+     */
+    private final static String FOLDCONSTANTS_PROPERTY = "translator.foldConstants";
+    private final static boolean FOLDCONSTANTS = false;
+    private static boolean foldConstants = FOLDCONSTANTS;
+
+    /**
+     * Set to true if conditional branches on constant operands that are never taken
+     * should be removed.
+     */
+    private final static String REMOVEDEADBRANCHES_PROPERTY = "translator.removeDeadBranches";
+    private final static boolean REMOVEDEADBRANCHES = false;
+    private static boolean removeDeadBranches = REMOVEDEADBRANCHES;
+
+    /**
+     * Set to true if a store to a local variable immediately followed by the only load
+     * of that variable should be removed.
+     */
+    private final static String REMOVEREDUNDANTLOCALS_PROPERTY = "translator.removeRedundantLocals";
+    private final static boolean REMOVEREDUNDANTLOCALS = false;
+    private static boolean removeRedundantLocals = REMOVEREDUNDANTLOCALS;
+
+    /**
+     * Set to true to print the size of the Java and Squawk bytecode and the number of
+     * optimizations performed when the translator is closed.
+     */
+    private final static String OPTIMIZATIONSTATS_PROPERTY = "translator.optimizationStats";
+    private final static boolean OPTIMIZATIONSTATS = false;
+    private static boolean optimizationStats = OPTIMIZATIONSTATS;
+
     /**
      * Returns true if the translator should use as much memory as necessary to do a best effort translation.
      *  (This used to be based on VM.isHosted().
@@ -66,6 +107,90 @@ public final class Translator implements TranslatorInterface {
         return optimizeParameterPassing;
     }
 
+    /**
+     * Returns true if calls to field accessor methods should be replaced by the field access.
+     */
+    public static boolean inlineAccessors() {
+        return inlineAccessors;
+    }
+
+    /**
+     * Returns true if integer and long operations on constant operands should be folded.
+     */
+    public static boolean foldConstants() {
+        return foldConstants;
+    }
+
+    /**
+     * Returns true if conditional branches on constant operands that are never taken should be removed.
+     */
+    public static boolean removeDeadBranches() {
+        return removeDeadBranches;
+    }
+
+    /**
+     * Returns true if redundant stores and loads of local variables should be removed.
+     */
+    public static boolean removeRedundantLocals() {
+        return removeRedundantLocals;
+    }
+
+    /*---------------------------------------------------------------------------*\
+     *                          Optimization statistics                          *
+    \*---------------------------------------------------------------------------*/
+
+    /**
+     * Indexes into {@link #optimizationCounts}.
+     */
+    public static final int INLINED_ACCESSORS = 0,
+                            FOLDED_CONSTANTS  = 1,
+                            REMOVED_BRANCHES  = 2,
+                            REMOVED_LOCALS    = 3,
+                            JAVA_BYTECODES    = 4,
+                            SQUAWK_BYTECODES  = 5;
+
+    /**
+     * The counts of the optimizations performed and the bytecode sizes.
+     */
+    private static final int[] optimizationCounts = new int[6];
+
+    /**
+     * Adds to one of the optimization statistics.
+     *
+     * @param stat   the statistic to update
+     * @param delta  the amount to add
+     */
+    public static void countOptimization(int stat, int delta) {
+        if (optimizationStats) {
+            optimizationCounts[stat] += delta;
+        }
+    }
+
+    /**
+     * Increments one of the optimization statistics.
+     *
+     * @param stat   the statistic to update
+     */
+    public static void countOptimization(int stat) {
+        countOptimization(stat, 1);
+    }
+
+    /**
+     * Prints the optimization statistics.
+     */
+    private static void printOptimizationStats() {
+        VM.println("Translator optimization statistics:");
+        VM.println("    Java bytecode bytes:      " + optimizationCounts[JAVA_BYTECODES]);
+        VM.println("    Squawk bytecode bytes:    " + optimizationCounts[SQUAWK_BYTECODES]);
+        VM.println("    Inlined accessors:        " + optimizationCounts[INLINED_ACCESSORS]);
+        VM.println("    Folded constants:         " + optimizationCounts[FOLDED_CONSTANTS]);
+        VM.println("    Removed branches:         " + optimizationCounts[REMOVED_BRANCHES]);
+        VM.println("    Removed local store/load: " + optimizationCounts[REMOVED_LOCALS]);
+        for (int i = 0; i != optimizationCounts.length; ++i) {
+            optimizationCounts[i] = 0;
+        }
+    }
+
     /*---------------------------------------------------------------------------*\
      *                     Implementation of TranslatorInterface                 *
     \*---------------------------------------------------------------------------*/
@@ -135,12 +260,22 @@ public final class Translator implements TranslatorInterface {
         boolean showHelp = getBooleanProperty(HELP_PROPERTY ,  false);
         optimizeConstantObjects  = getBooleanProperty(OPTIMIZECONSTANTOBJECTS_PROPERTY,  OPTIMIZECONSTANTOBJECTS);
         optimizeParameterPassing = getBooleanProperty(OPTIMIZEPARAMETERPASSING_PROPERTY, OPTIMIZEPARAMETERPASSING);
+        inlineAccessors          = getBooleanProperty(INLINEACCESSORS_PROPERTY, INLINEACCESSORS);
+        foldConstants            = getBooleanProperty(FOLDCONSTANTS_PROPERTY, FOLDCONSTANTS);
+        removeDeadBranches       = getBooleanProperty(REMOVEDEADBRANCHES_PROPERTY, REMOVEDEADBRANCHES);
+        removeRedundantLocals    = getBooleanProperty(REMOVEREDUNDANTLOCALS_PROPERTY, REMOVEREDUNDANTLOCALS);
+        optimizationStats        = getBooleanProperty(OPTIMIZATIONSTATS_PROPERTY, OPTIMIZATIONSTATS);
 
         if (showHelp || VM.isVeryVerbose()) {
             VM.println("Translator options and current values:");
             VM.println("    " + HELP_PROPERTY                     + "=" + showHelp);
             VM.println("    " + OPTIMIZECONSTANTOBJECTS_PROPERTY  + "=" + optimizeConstantObjects);
             VM.println("    " + OPTIMIZEPARAMETERPASSING_PROPERTY + "=" + optimizeParameterPassing);
+            VM.println("    " + INLINEACCESSORS_PROPERTY          + "=" + inlineAccessors);
+            VM.println("    " + FOLDCONSTANTS_PROPERTY            + "=" + foldConstants);
+            VM.println("    " + REMOVEDEADBRANCHES_PROPERTY       + "=" + removeDeadBranches);
+            VM.println("    " + REMOVEREDUNDANTLOCALS_PROPERTY    + "=" + removeRedundantLocals);
+            VM.println("    " + OPTIMIZATIONSTATS_PROPERTY        + "=" + optimizationStats);
         }
     }
 
@@ -150,6 +285,7 @@ public final class Translator implements TranslatorInterface {
     public void open(Suite suite, String classPath) {
         this.suite = suite;
         this.classFiles = new Hashtable();
+        this.accessors = new Hashtable();
         setOptions();
         try {
             String url = "classpath://" +  classPath;
@@ -204,6 +340,9 @@ public final class Translator implements TranslatorInterface {
      */
     public void close() {
         computeClosure();
+        if (optimizationStats) {
+            printOptimizationStats();
+        }
     }
 
     /*---------------------------------------------------------------------------*\
@@ -273,6 +412,35 @@ public final class Translator implements TranslatorInterface {
                 return null;
             }
         });
+        if (inlineAccessors && classFile.getDefinedClass().getState() == Klass.STATE_LOADED) {
+            classFile.findAccessors(this);
+        }
+    }
+
+    /**
+     * The field accessor methods of the classes loaded by this translator.
+     */
+    private Hashtable accessors;
+
+    /**
+     * Records that a method is a field accessor.
+     *
+     * @param method    the accessor method
+     * @param accessor  describes the field access performed by <code>method</code>
+     */
+    void addAccessor(Method method, Accessor accessor) {
+        accessors.put(method, accessor);
+    }
+
+    /**
+     * Gets the description of the field access performed by a method if it is a
+     * field accessor that can be inlined.
+     *
+     * @param method  the method
+     * @return the accessor for <code>method</code> or null
+     */
+    public Accessor getAccessor(Method method) {
+        return (Accessor)accessors.get(method);
     }
 
     /**
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2004 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ * This is a part of the Squawk JVM translator.
+ */
+package com.sun.squawk.translator.ir;
+
+import com.sun.squawk.translator.ci.*;
+import com.sun.squawk.*;
+
+/**
+ * An <code>Accessor</code> describes a method whose Java bytecode does nothing
+ * more than read or write a single field declared by the method's class. A call
+ * to such a method can be replaced by the field access itself by the
+ * {@link IRBuilder} if the call cannot be dispatched to an overriding method.
+ * The patterns recognized are:
+ * <p><blockquote><pre>
+ *     aload_0; getfield f; xreturn             // getter
+ *     aload_0; xload_1; putfield f; return     // setter
+ *     getstatic f; xreturn                     // static getter
+ *     xload_0; putstatic f; return             // static setter
+ * </pre></blockquote></p>
+ */
+public final class Accessor {
+
+    /**
+     * The kinds of accessor.
+     */
+    public static final int GETFIELD = 0, PUTFIELD = 1, GETSTATIC = 2, PUTSTATIC = 3;
+
+    /**
+     * The kind of this accessor.
+     */
+    private final int kind;
+
+    /**
+     * The constant pool of the class declaring the accessor method.
+     */
+    private final ConstantPool constantPool;
+
+    /**
+     * The index of the field reference in <code>constantPool</code>.
+     */
+    private final int index;
+
+    /**
+     * The accessed field (resolved lazily).
+     */
+    private Field field;
+
+    private Accessor(int kind, ConstantPool constantPool, int index) {
+        this.kind = kind;
+        this.constantPool = constantPool;
+        this.index = index;
+    }
+
+    /**
+     * Gets the kind of this accessor.
+     *
+     * @return one of {@link #GETFIELD}, {@link #PUTFIELD}, {@link #GETSTATIC} or {@link #PUTSTATIC}
+     */
+    public int getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the field accessed by this accessor, resolving it first if necessary.
+     *
+     * @param context  the context in which any resolution error is reported
+     * @return the accessed field
+     */
+    public Field getField(Context context) {
+        if (field == null) {
+            field = constantPool.getResolvedField(index, kind >= GETSTATIC, context);
+        }
+        return field;
+    }
+
+    /**
+     * Determines if a given Java bytecode opcode loads local variable 0 or 1.
+     */
+    private static boolean isLoad(int opcode, int local) {
+        switch (opcode - local) {
+            case Opcode.opc_iload_0:
+            case Opcode.opc_lload_0:
+            case Opcode.opc_fload_0:
+            case Opcode.opc_dload_0:
+            case Opcode.opc_aload_0:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Determines if a given Java bytecode opcode returns a value.
+     */
+    private static boolean isValueReturn(int opcode) {
+        return opcode >= Opcode.opc_ireturn && opcode <= Opcode.opc_areturn;
+    }
+
+    /**
+     * Creates an <code>Accessor</code> for a method if its code matches one of
+     * the accessor patterns.
+     *
+     * @param method        the method
+     * @param code          the contents of the method's "Code" class file attribute
+     * @param constantPool  the constant pool of the class declaring <code>method</code>
+     * @return an <code>Accessor</code> for <code>method</code> or null if it is not an accessor
+     */
+    public static Accessor create(Method method, byte[] code, ConstantPool constantPool) {
+        if (code.length < 8) {
+            return null;
+        }
+        int length = ((code[4] & 0xFF) << 24) | ((code[5] & 0xFF) << 16) | ((code[6] & 0xFF) << 8) | (code[7] & 0xFF);
+        if (length < 4 || length > 6 || code.length < 8 + length + 2) {
+            return null;
+        }
+        int handlers = ((code[8 + length] & 0xFF) << 8) | (code[8 + length + 1] & 0xFF);
+        if (handlers != 0) {
+            return null;
+        }
+
+        int[] bc = new int[length];
+        for (int i = 0; i != length; ++i) {
+            bc[i] = code[8 + i] & 0xFF;
+        }
+        int parameters = method.getParameterTypes().length;
+
+        if (!method.isStatic()) {
+            if (length == 5 && parameters == 0 &&
+                bc[0] == Opcode.opc_aload_0 && bc[1] == Opcode.opc_getfield && isValueReturn(bc[4])) {
+                return new Accessor(GETFIELD, constantPool, (bc[2] << 8) | bc[3]);
+            }
+            if (length == 6 && parameters == 1 &&
+                bc[0] == Opcode.opc_aload_0 && isLoad(bc[1], 1) && bc[2] == Opcode.opc_putfield && bc[5] == Opcode.opc_return) {
+                return new Accessor(PUTFIELD, constantPool, (bc[3] << 8) | bc[4]);
+            }
+        } else {
+            if (length == 4 && parameters == 0 &&
+                bc[0] == Opcode.opc_getstatic && isValueReturn(bc[3])) {
+                return new Accessor(GETSTATIC, constantPool, (bc[1] << 8) | bc[2]);
+            }
+            if (length == 5 && parameters == 1 &&
+                isLoad(bc[0], 0) && bc[1] == Opcode.opc_putstatic && bc[4] == Opcode.opc_return) {
+                return new Accessor(PUTSTATIC, constantPool, (bc[2] << 8) | bc[3]);
+            }
+        }
+        return null;
+    }
+}
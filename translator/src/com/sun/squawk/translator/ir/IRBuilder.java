@@ -77,6 +77,11 @@ public final class IRBuilder {
      */
     private LoadLocal copyOfThis;
 
+    /**
+     * The translation context.
+     */
+    private final Translator translator;
+
     /**
      * Creates a <code>IRBuilder</code> instance.
      *
@@ -86,6 +91,7 @@ public final class IRBuilder {
      *                     will build an IR
      */
     public IRBuilder(Translator translator, CodeParser codeParser) {
+        this.translator = translator;
         this.codeParser = codeParser;
         this.method = codeParser.getMethod();
         try {
@@ -1065,10 +1071,100 @@ public final class IRBuilder {
     private void opc_arithmetic(Klass type, int opcode) {
         StackProducer right = frame.pop(type);
         StackProducer left  = frame.pop(type);
+        if (foldConstants(left, right, opcode)) {
+            return;
+        }
         ArithmeticOp instruction = new ArithmeticOp(left, right, opcode);
         append(instruction);
     }
 
+    /**
+     * Determines if the last one or two instructions appended to the IR are integer or
+     * long constants that are the operands of an operation being processed.
+     * A constant pushed in another basic block is never at the tail of the IR as a
+     * target is always appended in between.
+     *
+     * @param left   the first operand or null if the operation is unary
+     * @param right  the last operand
+     * @return true if the operands are integral constants at the tail of the IR
+     */
+    private boolean isFoldable(StackProducer left, StackProducer right) {
+        if (!Translator.foldConstants() || right != ir.getTail() || !(right instanceof ConstantInt || right instanceof ConstantLong)) {
+            return false;
+        }
+        if (left != null) {
+            return left == right.getPrevious() && (left instanceof ConstantInt || left instanceof ConstantLong);
+        }
+        return true;
+    }
+
+    /**
+     * Replaces an integer or long arithmetic, shift, negation or conversion operation
+     * whose operands are all constants with the constant result of the operation.
+     * Division and remainder by zero are not folded so that the exception is still
+     * thrown at runtime.
+     *
+     * @param left    the first operand or null if the operation is unary
+     * @param right   the last operand
+     * @param opcode  the Squawk opcode corresponding to the operation
+     * @return true if the operation was folded
+     */
+    private boolean foldConstants(StackProducer left, StackProducer right, int opcode) {
+        if (!isFoldable(left, right)) {
+            return false;
+        }
+        Object r = ((Constant)right).getValue();
+        Object l = left == null ? null : ((Constant)left).getValue();
+        Object result = null;
+        if (l instanceof Long || (left == null && r instanceof Long)) {
+            long x = (left == null ? ((Long)r).longValue() : ((Long)l).longValue());
+            long y = (r instanceof Long ? ((Long)r).longValue() : ((Integer)r).intValue());
+            switch (opcode) {
+                case OPC.ADD_L:  result = new Long(x + y);   break;
+                case OPC.SUB_L:  result = new Long(x - y);   break;
+                case OPC.MUL_L:  result = new Long(x * y);   break;
+                case OPC.DIV_L:  if (y != 0) result = new Long(x / y); break;
+                case OPC.REM_L:  if (y != 0) result = new Long(x % y); break;
+                case OPC.AND_L:  result = new Long(x & y);   break;
+                case OPC.OR_L:   result = new Long(x | y);   break;
+                case OPC.XOR_L:  result = new Long(x ^ y);   break;
+                case OPC.SHL_L:  result = new Long(x << y);  break;
+                case OPC.SHR_L:  result = new Long(x >> y);  break;
+                case OPC.USHR_L: result = new Long(x >>> y); break;
+                case OPC.NEG_L:  result = new Long(-x);      break;
+                case OPC.L2I:    result = new Integer((int)x); break;
+            }
+        } else {
+            int x = (left == null ? ((Integer)r).intValue() : ((Integer)l).intValue());
+            int y = ((Integer)r).intValue();
+            switch (opcode) {
+                case OPC.ADD_I:  result = new Integer(x + y);   break;
+                case OPC.SUB_I:  result = new Integer(x - y);   break;
+                case OPC.MUL_I:  result = new Integer(x * y);   break;
+                case OPC.DIV_I:  if (y != 0) result = new Integer(x / y); break;
+                case OPC.REM_I:  if (y != 0) result = new Integer(x % y); break;
+                case OPC.AND_I:  result = new Integer(x & y);   break;
+                case OPC.OR_I:   result = new Integer(x | y);   break;
+                case OPC.XOR_I:  result = new Integer(x ^ y);   break;
+                case OPC.SHL_I:  result = new Integer(x << y);  break;
+                case OPC.SHR_I:  result = new Integer(x >> y);  break;
+                case OPC.USHR_I: result = new Integer(x >>> y); break;
+                case OPC.NEG_I:  result = new Integer(-x);      break;
+                case OPC.I2L:    result = new Long(x);          break;
+            }
+        }
+        if (result == null) {
+            return false;
+        }
+        ir.remove(right);
+        if (left != null) {
+            ir.remove(left);
+        }
+        opc_constant(Constant.create(result));
+        Translator.countOptimization(Translator.FOLDED_CONSTANTS);
+        return true;
+    }
+
     /**
      * Processes an instruction that pops two values off the operand stack
      * performs a binary comparison operation on them and pushes the result.
@@ -1094,6 +1190,9 @@ public final class IRBuilder {
      */
     private void opc_conversion(Klass from, Klass to, int opcode) {
         StackProducer value = frame.pop(from);
+        if ((opcode == OPC.I2L || opcode == OPC.L2I) && foldConstants(null, value, opcode)) {
+            return;
+        }
         ConversionOp instruction = new ConversionOp(to, value, opcode);
         append(instruction);
     }
@@ -1107,6 +1206,9 @@ public final class IRBuilder {
      */
     private void opc_negation(Klass type, int opcode) {
         StackProducer value = frame.pop(type);
+        if (foldConstants(null, value, opcode)) {
+            return;
+        }
         NegationOp instruction = new NegationOp(value, opcode);
         append(instruction);
     }
@@ -1122,6 +1224,9 @@ public final class IRBuilder {
     private void opc_shift(Klass type, int opcode) {
         StackProducer shift = frame.pop(Klass.INT);
         StackProducer value = frame.pop(type);
+        if (foldConstants(value, shift, opcode)) {
+            return;
+        }
         ArithmeticOp instruction = new ArithmeticOp(value, shift, opcode);
         append(instruction);
     }
@@ -1205,6 +1310,13 @@ public final class IRBuilder {
             throw codeParser.verifyError(value.getType().getName() + " must use EQ() and NE() for equality comparisons");
         }
 
+        if (Translator.removeDeadBranches() && value == ir.getTail() && value instanceof ConstantInt) {
+            int x = ((Integer)((ConstantInt)value).getValue()).intValue();
+            if (removeUntakenBranch(opcode - OPC.IF_EQ_I, x, 0, target, value, null)) {
+                return;
+            }
+        }
+
         If instruction = new If(value, opcode, target);
         append(instruction);
         processBasicBlockDelimiter(instruction, target, null);
@@ -1225,11 +1337,56 @@ public final class IRBuilder {
         if (left.getType().isSquawkPrimitive() || right.getType().isSquawkPrimitive()) {
             throw codeParser.verifyError(left.getType().getName() + " values must be compared with built in methods (eq(), ne(), lt() etc.)");
         }
+        if (Translator.removeDeadBranches() && right == ir.getTail() && left == right.getPrevious() &&
+            left instanceof ConstantInt && right instanceof ConstantInt) {
+            int x = ((Integer)((ConstantInt)left).getValue()).intValue();
+            int y = ((Integer)((ConstantInt)right).getValue()).intValue();
+            if (removeUntakenBranch(opcode - OPC.IF_CMPEQ_I, x, y, target, right, left)) {
+                return;
+            }
+        }
+
         IfCompare instruction = new IfCompare(left, right, opcode, target);
         append(instruction);
         processBasicBlockDelimiter(instruction, target, null);
     }
 
+    /**
+     * Removes a conditional integer branch whose operands are constants if the branch
+     * is never taken. The target is still verified against the current frame state
+     * as the stack map at the target describes the state on entry to it.
+     *
+     * @param  condition  the condition (0 = eq, 1 = ne, 2 = lt, 3 = le, 4 = gt, 5 = ge)
+     * @param  x          the value of the left operand
+     * @param  y          the value of the right operand
+     * @param  target     the target of the branch
+     * @param  right      the instruction producing the right operand
+     * @param  left       the instruction producing the left operand or null
+     * @return true if the branch was removed
+     */
+    private boolean removeUntakenBranch(int condition, int x, int y, Target target, StackProducer right, StackProducer left) {
+        boolean taken;
+        switch (condition) {
+            case 0:  taken = x == y; break;
+            case 1:  taken = x != y; break;
+            case 2:  taken = x <  y; break;
+            case 3:  taken = x <= y; break;
+            case 4:  taken = x >  y; break;
+            case 5:  taken = x >= y; break;
+            default: return false;
+        }
+        if (taken) {
+            return false;
+        }
+        ir.remove(right);
+        if (left != null) {
+            ir.remove(left);
+        }
+        verifyTarget(target);
+        Translator.countOptimization(Translator.REMOVED_BRANCHES);
+        return true;
+    }
+
     /**
      * Processes a point in the bytecode stream that is referred to in a
      * line number or local variable table.
@@ -1672,6 +1829,70 @@ public final class IRBuilder {
         frame.resetMaxStack();
     }
 
+    /**
+     * Replaces a call to an {@link Accessor} with the field access it performs. This
+     * is only done if the call cannot be dispatched to an overriding method and the
+     * field is declared by the class of the accessor (so that a static access initializes
+     * the same class as the call would have).
+     *
+     * @param callee  the invoked method
+     * @return true if the call was replaced
+     */
+    private boolean inlineAccessor(Method callee) {
+        Accessor accessor = Translator.inlineAccessors() ? translator.getAccessor(callee) : null;
+        if (accessor == null) {
+            return false;
+        }
+        Field field = accessor.getField(codeParser);
+        if (field.getDefiningClass() != callee.getDefiningClass() || field.hasConstant()) {
+            return false;
+        }
+        switch (accessor.getKind()) {
+            case Accessor.GETFIELD: {
+                if (callee.getReturnType() != field.getType()) {
+                    return false;
+                }
+                StackProducer object = frame.pop(Klass.REFERENCE);
+                verifyThisParameter(callee, object);
+                append(new GetField(field, object));
+                break;
+            }
+            case Accessor.PUTFIELD: {
+                if (callee.getParameterTypes()[0] != field.getType()) {
+                    return false;
+                }
+                StackProducer value  = frame.pop(field.getType());
+                StackProducer object = frame.pop(Klass.REFERENCE);
+                verifyThisParameter(callee, object);
+                append(new PutField(field, object, value));
+                break;
+            }
+            case Accessor.GETSTATIC: {
+                if (callee.getReturnType() != field.getType()) {
+                    return false;
+                }
+                append(new GetStatic(field));
+                break;
+            }
+            case Accessor.PUTSTATIC: {
+                if (callee.getParameterTypes()[0] != field.getType()) {
+                    return false;
+                }
+                StackProducer value = frame.pop(field.getType());
+                append(new PutStatic(field, value));
+                if (field.getDefiningClass() != method.getDefiningClass()) {
+                    frame.growMaxStack(1); // for the class_ version
+                }
+                frame.resetMaxStack();
+                break;
+            }
+            default:
+                Assert.shouldNotReachHere();
+        }
+        Translator.countOptimization(Translator.INLINED_ACCESSORS);
+        return true;
+    }
+
     /**
      * Processes an instruction that invokes a virtual method.
      *
@@ -1682,6 +1903,9 @@ public final class IRBuilder {
             if (callee.isConstructor() || callee.isClassInitializer()) {
                 throw codeParser.verifyError("expected invokespecial");
             }
+            if (inlineAccessor(callee)) {
+                return;
+            }
             StackProducer[] parameters = popInvokeParameters(callee);
             verifyThisParameter(callee, parameters[0]);
             InvokeVirtual instruction = new InvokeVirtual(callee, parameters);
@@ -1920,6 +2144,9 @@ public final class IRBuilder {
                 if (callee.isAbstract()) {
                     Translator.throwAbstractMethodError(callee.toString());
                 }
+                if (inlineAccessor(callee)) {
+                    return;
+                }
                 opc_invokesuper(callee);
             }
         } else {
@@ -1940,6 +2167,9 @@ public final class IRBuilder {
             if (callee.isConstructor()) {
                 throw codeParser.verifyError("call to <init> with invokestatic is invalid");
             }
+            if (inlineAccessor(callee)) {
+                return;
+            }
             frame.growMaxStack(1); // for the class object
             StackProducer[] parameters = popInvokeParameters(callee);
             InvokeStatic instruction = new InvokeStatic(callee, parameters);
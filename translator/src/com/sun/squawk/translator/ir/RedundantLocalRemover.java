@@ -0,0 +1,174 @@
+/*
+ * Copyright 2004 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ * This is a part of the Squawk JVM translator.
+ */
+package com.sun.squawk.translator.ir;
+
+import java.util.Hashtable;
+import com.sun.squawk.util.Assert;
+import com.sun.squawk.translator.Translator;
+import com.sun.squawk.translator.ir.instr.*;
+
+/**
+ * A <code>RedundantLocalRemover</code> removes a store to a local variable
+ * that is immediately followed by a load of the same variable when these are
+ * the only accesses to the variable in the method. This is the pattern javac
+ * produces for a temporary that is used once, for example:
+ * <p><blockquote><pre>
+ *     int x = foo();
+ *     return x + 1;
+ * </pre></blockquote></p>
+ * The value stored is instead left on the operand stack for the instruction
+ * that consumed the loaded value. This must be done before the
+ * {@link IRTransformer} runs so that any spilling it requires is computed
+ * for the new operand.<p>
+ *
+ * The transformation changes the set of locals visible to a debugger so it
+ * must not be applied to a method that has a LocalVariableTable.
+ */
+public final class RedundantLocalRemover implements OperandVisitor {
+
+    /**
+     * The IR being transformed.
+     */
+    private final IR ir;
+
+    /**
+     * The number of instructions accessing each local variable.
+     */
+    private final Hashtable accessCounts = new Hashtable();
+
+    /**
+     * The load being replaced when searching for its consumer.
+     */
+    private LoadLocal load;
+
+    /**
+     * The value that replaces <code>load</code>.
+     */
+    private StackProducer replacement;
+
+    /**
+     * The number of times <code>load</code> was found as an operand.
+     */
+    private int uses;
+
+    /**
+     * Creates a <code>RedundantLocalRemover</code>.
+     *
+     * @param ir  the IR to be transformed
+     */
+    public RedundantLocalRemover(IR ir) {
+        this.ir = ir;
+    }
+
+    /**
+     * Removes the redundant store/load pairs from the IR.
+     */
+    public void transform() {
+        countAccesses();
+        Instruction instruction = ir.getHead();
+        while (instruction != null) {
+            Instruction next = instruction.getNext();
+            if (instruction instanceof StoreLocal && next instanceof LoadLocal) {
+                StoreLocal store = (StoreLocal)instruction;
+                LoadLocal load = (LoadLocal)next;
+                if (isRemovable(store, load)) {
+                    next = load.getNext();
+                    ir.remove(store);
+                    ir.remove(load);
+                    Translator.countOptimization(Translator.REMOVED_LOCALS);
+                    continue;
+                }
+            }
+            instruction = next;
+        }
+    }
+
+    /**
+     * Determines if a store and the load immediately following it can be removed,
+     * rewriting the consumer of the loaded value if they can.
+     *
+     * @param store  the store
+     * @param load   the load immediately following <code>store</code>
+     * @return true if the consumer of <code>load</code> now consumes the stored value instead
+     */
+    private boolean isRemovable(StoreLocal store, LoadLocal load) {
+        Local local = store.getLocal();
+        StackProducer value = store.getValue();
+        if (load.getLocal() != local || local.isParameter() || value.getType() != load.getType()) {
+            return false;
+        }
+        if (value instanceof StackMerge || value.isSpilt() || value.isDuped() || load.isSpilt() || load.isDuped()) {
+            return false;
+        }
+        Integer count = (Integer)accessCounts.get(local);
+        if (count == null || count.intValue() != 2) {
+            return false;
+        }
+
+        /*
+         * Find the single consumer of the loaded value
+         */
+        Instruction consumer = null;
+        for (Instruction instruction = load.getNext(); instruction != null; instruction = instruction.getNext()) {
+            this.load = load;
+            this.replacement = null;
+            uses = 0;
+            instruction.visit(this);
+            if (uses != 0) {
+                if (uses != 1 || instruction instanceof StackMerge) {
+                    return false;
+                }
+                consumer = instruction;
+                break;
+            }
+        }
+        if (consumer == null) {
+            return false;
+        }
+
+        this.replacement = value;
+        uses = 0;
+        consumer.visit(this);
+        Assert.that(uses == 1);
+        this.load = null;
+        this.replacement = null;
+        return true;
+    }
+
+    /**
+     * Counts the instructions in the IR that access each local variable.
+     */
+    private void countAccesses() {
+        for (Instruction instruction = ir.getHead(); instruction != null; instruction = instruction.getNext()) {
+            if (instruction instanceof LocalVariable) {
+                Local local = ((LocalVariable)instruction).getLocal();
+                Integer count = (Integer)accessCounts.get(local);
+                accessCounts.put(local, new Integer(count == null ? 1 : count.intValue() + 1));
+            }
+        }
+    }
+
+    /**
+     * Counts an operand that is the load being replaced and, if a replacement
+     * has been given, substitutes it.
+     *
+     * @param   instruction  the instruction to which the operand belongs
+     * @param   operand      the operand to process
+     * @return  the new value of the operand
+     */
+    public StackProducer doOperand(Instruction instruction, StackProducer operand) {
+        if (operand == load) {
+            uses++;
+            if (replacement != null) {
+                return replacement;
+            }
+        }
+        return operand;
+    }
+}